@@ -29,6 +29,7 @@ public class CameraView {
     private OcrView ocrView = null;
     private int documentSide = -1;
     private MRZDocumentType documentType = null;
+    private boolean concurrentFaceDetection = false;
 
     public CameraView(Activity context) {
         this.context = context;
@@ -56,6 +57,17 @@ public class CameraView {
         return this;
     }
 
+    /**
+     * set true to detect the face of passports and visas while the mrz is read
+     *
+     * @param concurrent is default false
+     * @return
+     */
+    public CameraView setConcurrentFaceDetection(boolean concurrent) {
+        this.concurrentFaceDetection = concurrent;
+        return this;
+    }
+
     /**
      * add camera on this view
      *
@@ -153,6 +165,7 @@ public class CameraView {
                     .setOcrCallBack(this.callback)
                     .setStatusBarHeight(this.statusBarHeight)
                     .setMrzDocumentType(documentType != null ? documentType : MRZDocumentType.NONE);
+            ocrView.setConcurrentFaceDetection(concurrentFaceDetection);
 
             ocrView.init();
 //        }
@@ -261,6 +274,36 @@ public class CameraView {
         }
     }
 
+    /**
+     * time the last finished scan spent on the main thread, to watch for UI jank
+     *
+     * @return main thread time in milliseconds
+     */
+    public long getMainThreadTime() {
+        return ocrView != null ? ocrView.getMainThreadTime() : 0;
+    }
+
+    /**
+     * number of preview frames recognized in the current scan session
+     */
+    public long getProcessedFrameCount() {
+        return ocrView != null ? ocrView.getProcessedFrameCount() : 0;
+    }
+
+    /**
+     * number of preview frames replaced by a newer one while the previous frame was recognized
+     */
+    public long getSupersededFrameCount() {
+        return ocrView != null ? ocrView.getSupersededFrameCount() : 0;
+    }
+
+    /**
+     * number of preview frames dropped while recognition was stopped
+     */
+    public long getSkippedFrameCount() {
+        return ocrView != null ? ocrView.getSkippedFrameCount() : 0;
+    }
+
     public void release(boolean b) {
         if (ocrView != null) {
             ocrView.closeEngine(b);
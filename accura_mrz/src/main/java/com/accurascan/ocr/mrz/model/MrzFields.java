@@ -0,0 +1,176 @@
+package com.accurascan.ocr.mrz.model;
+
+import java.nio.charset.Charset;
+
+/**
+ * Compact copy of the MRZ fields returned by the native recognition.
+ *
+ * <p>The native output is a list of length-prefixed fields, one byte per int. The bytes of all fields
+ * are kept in one array with the offset and length of each field, a String is created only when a
+ * field is read by {@link #get(int)}. Fields of two reads can be compared without creating Strings.
+ */
+public final class MrzFields {
+
+    public static final int LINES = 0;
+    public static final int DOC_TYPE = 1;
+    public static final int COUNTRY = 2;
+    public static final int SURNAME = 3;
+    public static final int GIVEN_NAME = 4;
+    public static final int DOC_NUMBER = 5;
+    public static final int DOC_CHECKSUM = 6;
+    public static final int CORRECT_DOC_CHECKSUM = 7;
+    public static final int NATIONALITY = 8;
+    public static final int BIRTH = 9;
+    public static final int BIRTH_CHECKSUM = 10;
+    public static final int CORRECT_BIRTH_CHECKSUM = 11;
+    public static final int SEX = 12;
+    public static final int EXPIRATION_DATE = 13;
+    public static final int EXPIRATION_CHECKSUM = 14;
+    public static final int CORRECT_EXPIRATION_CHECKSUM = 15;
+    public static final int ISSUE_DATE = 16;
+    public static final int OTHER_ID = 17;
+    public static final int OTHER_ID_CHECKSUM = 18;
+    public static final int CORRECT_OTHER_ID_CHECKSUM = 19;
+    public static final int DEPARTMENT_NUMBER = 20;
+    public static final int SECOND_ROW_CHECKSUM = 21;
+    public static final int CORRECT_SECOND_ROW_CHECKSUM = 22;
+    public static final int FIELD_COUNT = 23;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] data = new byte[256];
+    private final int[] offsets = new int[FIELD_COUNT];
+    private final int[] lengths = new int[FIELD_COUNT];
+    private final String[] strings = new String[FIELD_COUNT];
+    private boolean valid = false;
+
+    /**
+     * Read the fields from the native output, nothing is decoded to String yet.
+     *
+     * @param intData native output, a length followed by that many bytes for each field
+     * @return false if the output is incomplete, all fields are empty in that case
+     */
+    public boolean set(int[] intData) {
+        clear();
+        if (intData == null) return false;
+
+        int k = 0, size = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (k >= intData.length) return failed();
+            int len = intData[k++];
+            if (len < 0 || len > intData.length - k) return failed();
+            ensureCapacity(size + len);
+            offsets[field] = size;
+            // like a C string, the field ends at the first NUL
+            int end = len;
+            for (int i = 0; i < len; i++) {
+                byte b = (byte) intData[k + i];
+                if (b == 0 && end == len) end = i;
+                data[size + i] = b;
+            }
+            lengths[field] = end;
+            size += len;
+            k += len;
+        }
+        valid = true;
+        return true;
+    }
+
+    /**
+     * Copy the fields of another read, reusing the arrays of this instance.
+     */
+    public void set(MrzFields other) {
+        int size = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            size = Math.max(size, other.offsets[field] + other.lengths[field]);
+        }
+        ensureCapacity(size);
+        System.arraycopy(other.data, 0, data, 0, size);
+        System.arraycopy(other.offsets, 0, offsets, 0, FIELD_COUNT);
+        System.arraycopy(other.lengths, 0, lengths, 0, FIELD_COUNT);
+        System.arraycopy(other.strings, 0, strings, 0, FIELD_COUNT);
+        valid = other.valid;
+    }
+
+    /**
+     * Replace the value of one field, e.g. after the MRZ lines of the read were repaired.
+     */
+    public void set(int field, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        int size = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            size = Math.max(size, offsets[i] + lengths[i]);
+        }
+        ensureCapacity(size + bytes.length);
+        System.arraycopy(bytes, 0, data, size, bytes.length);
+        offsets[field] = size;
+        lengths[field] = bytes.length;
+        strings[field] = value;
+    }
+
+    public void clear() {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            offsets[field] = 0;
+            lengths[field] = 0;
+            strings[field] = null;
+        }
+        valid = false;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return value of the field, created on the first call
+     */
+    public String get(int field) {
+        String value = strings[field];
+        if (value == null) {
+            value = lengths[field] == 0 ? "" : new String(data, offsets[field], lengths[field], UTF_8);
+            strings[field] = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return number of bytes of the field
+     */
+    public int length(int field) {
+        return lengths[field];
+    }
+
+    public byte byteAt(int field, int index) {
+        if (index < 0 || index >= lengths[field]) throw new IndexOutOfBoundsException("index " + index);
+        return data[offsets[field] + index];
+    }
+
+    public boolean isEmpty(int field) {
+        return lengths[field] == 0;
+    }
+
+    /**
+     * @return true if the field has the same bytes in both reads
+     */
+    public boolean fieldEquals(int field, MrzFields other) {
+        int length = lengths[field];
+        if (length != other.lengths[field]) return false;
+        for (int i = 0, a = offsets[field], b = other.offsets[field]; i < length; i++, a++, b++) {
+            if (data[a] != other.data[b]) return false;
+        }
+        return true;
+    }
+
+    private boolean failed() {
+        clear();
+        return false;
+    }
+
+    private void ensureCapacity(int size) {
+        if (data.length < size) {
+            byte[] bigger = new byte[Math.max(size, data.length * 2)];
+            System.arraycopy(data, 0, bigger, 0, data.length);
+            data = bigger;
+        }
+    }
+}
@@ -49,32 +49,78 @@ public class RecogResult {
     DateFormat date = new SimpleDateFormat("yymmdd", Locale.getDefault());
     SimpleDateFormat newDateFormat = new SimpleDateFormat("dd-mm-yy", Locale.getDefault());
 
+    private final transient MrzFields mrzFields = new MrzFields();
+    private transient boolean fieldsDecoded = true;
+
+    /**
+     * Set all fields from the native output.
+     *
+     * @param intData native output
+     */
     public void SetResult(int[] intData) {
-        int i, k = 0, len;
-        byte[] tmp = new byte[100];
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; lines = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; docType = convchar2string(tmp);
-        len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; country = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; surname = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; givenname = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; docnumber = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; docchecksum = convchar2string(tmp);
-        len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; correctdocchecksum = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; nationality = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; birth = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; birthchecksum = convchar2string(tmp);
-        len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; correctbirthchecksum = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; sex = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; expirationdate = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; expirationchecksum = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; correctexpirationchecksum = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; issuedate = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; otherid = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; otheridchecksum = convchar2string(tmp);
-        len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; correctotheridchecksum = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; departmentnumber = convchar2string(tmp);
-		len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; secondrowchecksum = convchar2string(tmp);
-        len = intData[k++]; for(i=0;i<len;++i) tmp[i] = (byte)intData[k++]; tmp[i] = 0; correctsecondrowchecksum = convchar2string(tmp);
+        setRawResult(intData);
+        decodeFields();
+    }
+
+    /**
+     * Keep the native output of a successful read without creating the field Strings, only
+     * {@link #lines} is set. The other fields are set by {@link #decodeFields()}.
+     *
+     * @param intData native output
+     */
+    public void setRawResult(int[] intData) {
+        mrzFields.set(intData);
+        lines = mrzFields.get(MrzFields.LINES);
+        fieldsDecoded = false;
+    }
+
+    /**
+     * Same as {@link #setRawResult(int[])} for fields which have been read already.
+     *
+     * @param fields fields of a read, copied
+     */
+    public void setRawResult(MrzFields fields) {
+        mrzFields.set(fields);
+        lines = mrzFields.get(MrzFields.LINES);
+        fieldsDecoded = false;
+    }
+
+    /**
+     * @return fields of the last read, must not be modified
+     */
+    public MrzFields getMrzFields() {
+        return mrzFields;
+    }
+
+    /**
+     * Set the public fields from the last read given to {@link #setRawResult(int[])}, except
+     * {@link #lines} which is set already. Does nothing if they have been set already.
+     */
+    public void decodeFields() {
+        if (fieldsDecoded) return;
+        fieldsDecoded = true;
+        docType = mrzFields.get(MrzFields.DOC_TYPE);
+        country = mrzFields.get(MrzFields.COUNTRY);
+        surname = mrzFields.get(MrzFields.SURNAME);
+        givenname = mrzFields.get(MrzFields.GIVEN_NAME);
+        docnumber = mrzFields.get(MrzFields.DOC_NUMBER);
+        docchecksum = mrzFields.get(MrzFields.DOC_CHECKSUM);
+        correctdocchecksum = mrzFields.get(MrzFields.CORRECT_DOC_CHECKSUM);
+        nationality = mrzFields.get(MrzFields.NATIONALITY);
+        birth = mrzFields.get(MrzFields.BIRTH);
+        birthchecksum = mrzFields.get(MrzFields.BIRTH_CHECKSUM);
+        correctbirthchecksum = mrzFields.get(MrzFields.CORRECT_BIRTH_CHECKSUM);
+        sex = mrzFields.get(MrzFields.SEX);
+        expirationdate = mrzFields.get(MrzFields.EXPIRATION_DATE);
+        expirationchecksum = mrzFields.get(MrzFields.EXPIRATION_CHECKSUM);
+        correctexpirationchecksum = mrzFields.get(MrzFields.CORRECT_EXPIRATION_CHECKSUM);
+        issuedate = mrzFields.get(MrzFields.ISSUE_DATE);
+        otherid = mrzFields.get(MrzFields.OTHER_ID);
+        otheridchecksum = mrzFields.get(MrzFields.OTHER_ID_CHECKSUM);
+        correctotheridchecksum = mrzFields.get(MrzFields.CORRECT_OTHER_ID_CHECKSUM);
+        departmentnumber = mrzFields.get(MrzFields.DEPARTMENT_NUMBER);
+        secondrowchecksum = mrzFields.get(MrzFields.SECOND_ROW_CHECKSUM);
+        correctsecondrowchecksum = mrzFields.get(MrzFields.CORRECT_SECOND_ROW_CHECKSUM);
 
 //        if (!sex.isEmpty()) {
 //            if (sex.equalsIgnoreCase("F")) {
@@ -2,8 +2,11 @@ package com.accurascan.ocr.mrz.motiondetection;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
 
 import java.io.ByteArrayOutputStream;
 
@@ -11,6 +14,9 @@ import java.io.ByteArrayOutputStream;
 /**
  * This abstract class is used to process images.
  *
+ * <p>Every method has a variant writing into a destination given by the caller (array or Bitmap),
+ * so it can be called for every preview frame without allocating. The methods returning a new
+ * array or Bitmap are kept for convenience and call those variants.
  */
 public abstract class ImageProcessing {
 
@@ -34,11 +40,24 @@ public abstract class ImageProcessing {
      * @return float array of a,r,g,b values.
      */
     public static float[] getARGB(int pixel) {
-        int a = (pixel >> 24) & 0xff;
-        int r = (pixel >> 16) & 0xff;
-        int g = (pixel >> 8) & 0xff;
-        int b = (pixel) & 0xff;
-        return (new float[] { a, r, g, b });
+        return getARGB(pixel, new float[4]);
+    }
+
+    /**
+     * Get RGB values from pixel.
+     *
+     * @param pixel
+     *            Integer representation of a pixel.
+     * @param argb
+     *            float array of at least 4 values, filled with a,r,g,b values.
+     * @return {@code argb}
+     */
+    public static float[] getARGB(int pixel, float[] argb) {
+        argb[A] = (pixel >> 24) & 0xff;
+        argb[R] = (pixel >> 16) & 0xff;
+        argb[G] = (pixel >> 8) & 0xff;
+        argb[B] = (pixel) & 0xff;
+        return argb;
     }
 
     /**
@@ -54,6 +73,17 @@ public abstract class ImageProcessing {
      * @return Integer array representing an HSL pixel.
      */
     public static int[] convertToHSL(int r, int g, int b) {
+        return convertToHSL(r, g, b, new int[3]);
+    }
+
+    /**
+     * Get HSL (Hue, Saturation, Luma) from RGB, see {@link #convertToHSL(int, int, int)}.
+     *
+     * @param hsl
+     *            Integer array of at least 3 values, filled with h,s,l values.
+     * @return {@code hsl}
+     */
+    public static int[] convertToHSL(int r, int g, int b, int[] hsl) {
         float red = r / 255;
         float green = g / 255;
         float blue = b / 255;
@@ -88,7 +118,10 @@ public abstract class ImageProcessing {
         l *= 100;
 
         // Since they were converted from float to int
-        return (new int[] { (int) h, (int) s, (int) l });
+        hsl[H] = (int) h;
+        hsl[S] = (int) s;
+        hsl[L] = (int) l;
+        return hsl;
     }
 
     /**
@@ -107,17 +140,50 @@ public abstract class ImageProcessing {
     public static int[] decodeYUV420SPtoLuma(byte[] yuv420sp, int width, int height) {
         if (yuv420sp == null) throw new NullPointerException();
 
-        final int frameSize = width * height;
-        int[] hsl = new int[frameSize];
+        int[] hsl = new int[width * height];
+        return decodeYUV420SPtoLuma(yuv420sp, width, height, 0, 0, width, height, 1, hsl);
+    }
 
-        for (int j = 0, yp = 0; j < height; j++) {
-            for (int i = 0; i < width; i++, yp++) {
+    /**
+     * Decode a region of a YUV420SP image to Luma into the given array.
+     *
+     * @param yuv420sp
+     *            Byte array representing a YUV420SP image.
+     * @param width
+     *            Width of the image.
+     * @param height
+     *            Height of the image.
+     * @param left
+     *            Left of the region.
+     * @param top
+     *            Top of the region.
+     * @param regionWidth
+     *            Width of the region.
+     * @param regionHeight
+     *            Height of the region.
+     * @param stride
+     *            Only every stride-th pixel of every stride-th row is decoded, 1 for all pixels.
+     * @param luma
+     *            Destination of at least {@link #getSampledLength(int, int, int)} values, filled row by row.
+     * @return {@code luma}
+     * @throws NullPointerException
+     *             if yuv420sp byte array is NULL.
+     */
+    public static int[] decodeYUV420SPtoLuma(byte[] yuv420sp, int width, int height, int left, int top,
+                                             int regionWidth, int regionHeight, int stride, int[] luma) {
+        if (yuv420sp == null || luma == null) throw new NullPointerException();
+        checkRegion(width, height, left, top, regionWidth, regionHeight, stride);
+
+        final int bottom = top + regionHeight;
+        final int right = left + regionWidth;
+        for (int j = top, k = 0; j < bottom; j += stride) {
+            for (int i = left, yp = j * width + left; i < right; i += stride, yp += stride, k++) {
                 int y = (0xff & (yuv420sp[yp])) - 16;
                 if (y < 0) y = 0;
-                hsl[yp] = y;
+                luma[k] = y;
             }
         }
-        return hsl;
+        return luma;
     }
 
     /**
@@ -136,18 +202,52 @@ public abstract class ImageProcessing {
     public static int[] decodeYUV420SPtoRGB(byte[] yuv420sp, int width, int height) {
         if (yuv420sp == null) throw new NullPointerException();
 
-        final int frameSize = width * height;
-        int[] rgb = new int[frameSize];
+        int[] rgb = new int[width * height];
+        return decodeYUV420SPtoRGB(yuv420sp, width, height, 0, 0, width, height, 1, rgb);
+    }
+
+    /**
+     * Decode a region of a YUV420SP image to RGB into the given array. Decoded pixels are the same
+     * as the ones of {@link #decodeYUV420SPtoRGB(byte[], int, int)} at that position.
+     *
+     * @param yuv420sp
+     *            Byte array representing a YUV420SP image.
+     * @param width
+     *            Width of the image.
+     * @param height
+     *            Height of the image.
+     * @param left
+     *            Left of the region.
+     * @param top
+     *            Top of the region.
+     * @param regionWidth
+     *            Width of the region.
+     * @param regionHeight
+     *            Height of the region.
+     * @param stride
+     *            Only every stride-th pixel of every stride-th row is decoded, 1 for all pixels.
+     * @param rgb
+     *            Destination of at least {@link #getSampledLength(int, int, int)} values, filled row by row.
+     * @return {@code rgb}
+     * @throws NullPointerException
+     *             if yuv420sp byte array is NULL.
+     */
+    public static int[] decodeYUV420SPtoRGB(byte[] yuv420sp, int width, int height, int left, int top,
+                                            int regionWidth, int regionHeight, int stride, int[] rgb) {
+        if (yuv420sp == null || rgb == null) throw new NullPointerException();
+        checkRegion(width, height, left, top, regionWidth, regionHeight, stride);
 
-        for (int j = 0, yp = 0; j < height; j++) {
-            int uvp = frameSize + (j >> 1) * width, u = 0, v = 0;
-            for (int i = 0; i < width; i++, yp++) {
+        final int frameSize = width * height;
+        final int bottom = top + regionHeight;
+        final int right = left + regionWidth;
+        for (int j = top, k = 0; j < bottom; j += stride) {
+            int uvRow = frameSize + (j >> 1) * width;
+            for (int i = left, yp = j * width + left; i < right; i += stride, yp += stride, k++) {
                 int y = (0xff & (yuv420sp[yp])) - 16;
                 if (y < 0) y = 0;
-                if ((i & 1) == 0) {
-                    v = (0xff & yuv420sp[uvp++]) - 128;
-                    u = (0xff & yuv420sp[uvp++]) - 128;
-                }
+                int uvp = uvRow + (i & ~1);
+                int v = (0xff & yuv420sp[uvp]) - 128;
+                int u = (0xff & yuv420sp[uvp + 1]) - 128;
                 int y1192 = 1192 * y;
                 int r = (y1192 + 1634 * v);
                 int g = (y1192 - 833 * v - 400 * u);
@@ -160,7 +260,7 @@ public abstract class ImageProcessing {
                 if (b < 0) b = 0;
                 else if (b > 262143) b = 262143;
 
-                rgb[yp] = 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+                rgb[k] = 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
             }
         }
         return rgb;
@@ -183,6 +283,27 @@ public abstract class ImageProcessing {
         if (rgb == null) throw new NullPointerException();
 
         Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        return rgbToBitmap(rgb, width, height, bitmap);
+    }
+
+    /**
+     * Copy an RGB image into the given mutable Bitmap.
+     *
+     * @param rgb
+     *            Integer array representing an RGB image.
+     * @param width
+     *            Width of the image.
+     * @param height
+     *            Height of the image.
+     * @param bitmap
+     *            Mutable Bitmap of at least width x height pixels.
+     * @return {@code bitmap}
+     * @throws NullPointerException
+     *             if RGB integer array is NULL.
+     */
+    public static Bitmap rgbToBitmap(int[] rgb, int width, int height, Bitmap bitmap) {
+        if (rgb == null || bitmap == null) throw new NullPointerException();
+
         bitmap.setPixels(rgb, 0, width, 0, 0, width, height);
         return bitmap;
     }
@@ -204,15 +325,54 @@ public abstract class ImageProcessing {
         if (lum == null) throw new NullPointerException();
 
         Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
-        for (int y = 0, xy = 0; y < bitmap.getHeight(); y++) {
-            for (int x = 0; x < bitmap.getWidth(); x++, xy++) {
+        return lumaToGreyscale(lum, width, height, new int[width], bitmap);
+    }
+
+    /**
+     * Convert an Luma image into Greyscale in the given Bitmap, one row at a time.
+     *
+     * @param lum
+     *            Integer array representing an Luma image.
+     * @param width
+     *            Width of the image.
+     * @param height
+     *            Height of the image.
+     * @param row
+     *            Buffer of at least width values used for one row of pixels.
+     * @param bitmap
+     *            Mutable Bitmap of at least width x height pixels.
+     * @return {@code bitmap}
+     * @throws NullPointerException
+     *             if Luma integer array is NULL.
+     */
+    public static Bitmap lumaToGreyscale(int[] lum, int width, int height, int[] row, Bitmap bitmap) {
+        if (lum == null || row == null || bitmap == null) throw new NullPointerException();
+
+        for (int y = 0, xy = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, xy++) {
                 int luma = lum[xy];
-                bitmap.setPixel(x, y, Color.argb(1, luma, luma, luma));
+                row[x] = Color.argb(1, luma, luma, luma);
             }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
         }
         return bitmap;
     }
 
+    /**
+     * @return number of values decoded from a region with the given stride
+     */
+    public static int getSampledLength(int regionWidth, int regionHeight, int stride) {
+        return ((regionWidth + stride - 1) / stride) * ((regionHeight + stride - 1) / stride);
+    }
+
+    private static void checkRegion(int width, int height, int left, int top, int regionWidth, int regionHeight, int stride) {
+        if (stride < 1) throw new IllegalArgumentException("stride must be at least 1");
+        if (left < 0 || top < 0 || regionWidth < 0 || regionHeight < 0
+                || left + regionWidth > width || top + regionHeight > height) {
+            throw new IllegalArgumentException("region is outside of the image");
+        }
+    }
+
     /**
      * Rotate the given Bitmap by the given degrees.
      * 
@@ -234,10 +394,55 @@ public abstract class ImageProcessing {
         matrix.postRotate(degrees);
 
         // Getting the rotated Bitmap
-        Bitmap rotatedBmp = Bitmap.createBitmap(bmp, 0, 0, width, height, matrix, true);
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        rotatedBmp.compress(Bitmap.CompressFormat.JPEG, 100, stream);
-        return rotatedBmp;
+        return Bitmap.createBitmap(bmp, 0, 0, width, height, matrix, true);
+    }
+
+    /**
+     * Draw the given Bitmap rotated by the given degrees into another Bitmap. The rotated image is
+     * placed at the top left corner of the destination, the rest of it is cleared. Callers rotating
+     * every frame should keep a {@link Rotator}, this method creates one per call.
+     *
+     * @param bmp
+     *            Bitmap to rotate.
+     * @param degrees
+     *            Degrees to rotate.
+     * @param dst
+     *            Mutable Bitmap large enough for the rotated image.
+     * @return {@code dst}
+     */
+    public static Bitmap rotate(Bitmap bmp, int degrees, Bitmap dst) {
+        return new Rotator().rotate(bmp, degrees, dst);
+    }
+
+    /**
+     * Rotation into a destination Bitmap which reuses its Matrix, Canvas and Paint. An instance is
+     * not thread safe, every thread needs its own.
+     */
+    public static final class Rotator {
+
+        private final Matrix matrix = new Matrix();
+        private final RectF bounds = new RectF();
+        private final Canvas canvas = new Canvas();
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        /**
+         * Same as {@link ImageProcessing#rotate(Bitmap, int, Bitmap)} without allocating.
+         */
+        public Bitmap rotate(Bitmap bmp, int degrees, Bitmap dst) {
+            if (bmp == null || dst == null) throw new NullPointerException();
+
+            matrix.setRotate(degrees);
+            bounds.set(0, 0, bmp.getWidth(), bmp.getHeight());
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+
+            // a reused destination still holds the pixels of its previous image
+            dst.eraseColor(0);
+            canvas.setBitmap(dst);
+            canvas.drawBitmap(bmp, matrix, paint);
+            canvas.setBitmap(null);
+            return dst;
+        }
     }
 
     /**
@@ -257,10 +462,12 @@ public abstract class ImageProcessing {
 
         // Getting the rotated Bitmap
         Bitmap rotatedBmp = rotate(bmp, degrees);
+        if (rotatedBmp != bmp) bmp.recycle();
 
         // Get the byte array from the Bitmap
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
         rotatedBmp.compress(Bitmap.CompressFormat.JPEG, 100, stream);
+        rotatedBmp.recycle();
         return stream.toByteArray();
     }
 }
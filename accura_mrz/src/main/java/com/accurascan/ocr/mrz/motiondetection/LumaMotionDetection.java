@@ -0,0 +1,267 @@
+package com.accurascan.ocr.mrz.motiondetection;
+
+import java.util.Arrays;
+
+/**
+ * Motion detection on the luma (Y) plane of a NV21/YUV420SP preview frame.
+ *
+ * <p>Only every {@code stride}-th pixel of every {@code stride}-th row is compared, and the samples
+ * are kept in two preallocated arrays which are swapped after each frame, so no full frame RGB
+ * decoding and no per frame allocation is needed.
+ *
+ * <p>The frame is split into a grid of tiles. The inner tiles (where the document is placed) decide
+ * motion the same way as {@link RgbMotionDetection}, by the percentage of different pixels. The outer
+ * ring of tiles only counts as motion when most of the tiles are moving (camera shake), so a hand
+ * moving at the edge of the frame does not reject a steady document. Scanning stops as soon as the
+ * decision is known.
+ */
+public class LumaMotionDetection implements IMotionDetection {
+
+    public static final int DEFAULT_STRIDE = 4;
+    public static final int DEFAULT_TILES = 8;
+
+    private static final byte TILE_UNKNOWN = 0;
+    private static final byte TILE_STILL = 1;
+    private static final byte TILE_MOVING = 2;
+
+    // Specific settings
+    private static final int mPixelThreshold = 40; // Difference in pixel (Luma)
+    private static final float mDefaultRatio = 7.7f; // percent of different pixels
+
+    private final int stride;
+    private final int tileColumns;
+    private final int tileRows;
+    // per tile result of the current frame, only used while deciding
+    private final byte[] motionMap;
+
+    private byte[] mPrevious = null;
+    private byte[] mCurrent = null;
+    private int mPreviousWidth = 0;
+    private int mPreviousHeight = 0;
+    private boolean hasPrevious = false;
+
+    public LumaMotionDetection() {
+        this(DEFAULT_STRIDE);
+    }
+
+    /**
+     * @param stride subsampling step in pixels for rows and columns, 1 to compare every pixel
+     */
+    public LumaMotionDetection(int stride) {
+        this(stride, DEFAULT_TILES, DEFAULT_TILES);
+    }
+
+    /**
+     * @param stride      subsampling step in pixels for rows and columns, 1 to compare every pixel
+     * @param tileColumns number of tile columns, at least 3 to have inner tiles
+     * @param tileRows    number of tile rows, at least 3 to have inner tiles
+     */
+    public LumaMotionDetection(int stride, int tileColumns, int tileRows) {
+        if (stride < 1) throw new IllegalArgumentException("stride must be at least 1");
+        if (tileColumns < 3 || tileRows < 3) throw new IllegalArgumentException("tile grid must be at least 3x3");
+        this.stride = stride;
+        this.tileColumns = tileColumns;
+        this.tileRows = tileRows;
+        this.motionMap = new byte[tileColumns * tileRows];
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getTileColumns() {
+        return tileColumns;
+    }
+
+    public int getTileRows() {
+        return tileRows;
+    }
+
+    /**
+     * Forget the previous frame, the next frame is used as new background.
+     */
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return luma samples of the previous frame
+     */
+    @Override
+    public int[] getPrevious() {
+        if (!hasPrevious) return null;
+        int length = mPreviousWidth * mPreviousHeight;
+        int[] previous = new int[length];
+        for (int i = 0; i < length; i++) {
+            previous[i] = 0xff & mPrevious[i];
+        }
+        return previous;
+    }
+
+    /**
+     * Detect motion on an ARGB image, luma is calculated from the RGB values. {@inheritDoc}
+     */
+    @Override
+    public boolean detect(int[] rgb, int width, int height) {
+        if (rgb == null) throw new NullPointerException();
+
+        int sampledWidth = (width + stride - 1) / stride;
+        int sampledHeight = (height + stride - 1) / stride;
+        byte[] current = prepare(sampledWidth, sampledHeight);
+        for (int y = 0, k = 0; y < height; y += stride) {
+            int row = y * width;
+            for (int x = 0; x < width; x += stride, k++) {
+                int pixel = rgb[row + x];
+                int r = (pixel >> 16) & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = pixel & 0xff;
+                current[k] = (byte) ((r * 77 + g * 150 + b * 29) >> 8);
+            }
+        }
+        return compareAndSwap(sampledWidth, sampledHeight, mDefaultRatio);
+    }
+
+    /**
+     * Detect motion on the Y plane of a NV21 frame.
+     *
+     * @param nv21       NV21 (YUV420SP) preview frame
+     * @param width      Width of the image.
+     * @param height     Height of the image.
+     * @param i          motion threshold set by {@link com.docrecog.scan.RecogEngine#setMotionData(android.app.Activity, int)}
+     * @param resolution camera resolution factor
+     * @return boolean True is there is motion.
+     */
+    public boolean detect(byte[] nv21, int width, int height, float i, float resolution) {
+        if (nv21 == null) throw new NullPointerException();
+
+        int sampledWidth = (width + stride - 1) / stride;
+        int sampledHeight = (height + stride - 1) / stride;
+        byte[] current = prepare(sampledWidth, sampledHeight);
+        for (int y = 0, k = 0; y < height; y += stride) {
+            int row = y * width;
+            for (int x = 0; x < width; x += stride, k++) {
+                current[k] = nv21[row + x];
+            }
+        }
+        return compareAndSwap(sampledWidth, sampledHeight, getRatio(i, resolution));
+    }
+
+    private byte[] prepare(int sampledWidth, int sampledHeight) {
+        int length = sampledWidth * sampledHeight;
+        if (mCurrent == null || mCurrent.length < length) {
+            // (re)allocate both buffers once per preview size
+            mCurrent = new byte[length];
+            mPrevious = new byte[length];
+            hasPrevious = false;
+        }
+        return mCurrent;
+    }
+
+    private boolean compareAndSwap(int sampledWidth, int sampledHeight, float ratio) {
+        boolean motionDetected = false;
+        Arrays.fill(motionMap, TILE_UNKNOWN);
+        if (hasPrevious && mPreviousWidth == sampledWidth && mPreviousHeight == sampledHeight) {
+            motionDetected = isDifferent(sampledWidth, sampledHeight, ratio);
+        } else if (hasPrevious) {
+            // frame size changed, treat it like the original implementation does
+            motionDetected = true;
+        }
+
+        // Replace the previous image with the current.
+        byte[] tmp = mPrevious;
+        mPrevious = mCurrent;
+        mCurrent = tmp;
+        mPreviousWidth = sampledWidth;
+        mPreviousHeight = sampledHeight;
+        hasPrevious = true;
+        return motionDetected;
+    }
+
+    private boolean isDifferent(int width, int height, float ratio) {
+        int tileWidth = (width + tileColumns - 1) / tileColumns;
+        int tileHeight = (height + tileRows - 1) / tileRows;
+
+        // inner tiles: motion when the different pixels of all inner tiles pass the threshold
+        int innerLeft = Math.min(tileWidth, width);
+        int innerTop = Math.min(tileHeight, height);
+        int innerRight = Math.max(innerLeft, Math.min((tileColumns - 1) * tileWidth, width));
+        int innerBottom = Math.max(innerTop, Math.min((tileRows - 1) * tileHeight, height));
+        int innerThreshold = (int) ((innerRight - innerLeft) * (innerBottom - innerTop) * ratio / 100);
+        int innerDifferent = 0;
+        for (int row = 1; row < tileRows - 1; row++) {
+            for (int column = 1; column < tileColumns - 1; column++) {
+                int tileThreshold = getTileThreshold(column, row, tileWidth, tileHeight, width, height, ratio);
+                // counting past the tile threshold is only needed while the inner total is undecided
+                int limit = Math.max(tileThreshold, innerThreshold - innerDifferent);
+                int different = countDifferent(column, row, tileWidth, tileHeight, width, height, limit);
+                motionMap[row * tileColumns + column] = different > tileThreshold ? TILE_MOVING : TILE_STILL;
+                innerDifferent += different;
+                if (innerDifferent > innerThreshold) return true;
+            }
+        }
+
+        // outer ring: motion only when at least half of all tiles move, i.e. the camera is shaking
+        int tileCount = tileColumns * tileRows;
+        int shakeTiles = (tileCount + 1) / 2;
+        int movingTiles = 0;
+        for (byte state : motionMap) {
+            if (state == TILE_MOVING) movingTiles++;
+        }
+        int remainingTiles = 2 * (tileColumns + tileRows) - 4;
+        for (int row = 0; row < tileRows; row++) {
+            for (int column = 0; column < tileColumns; column++) {
+                if (row != 0 && row != tileRows - 1 && column != 0 && column != tileColumns - 1) continue;
+                if (movingTiles >= shakeTiles) return true;
+                if (movingTiles + remainingTiles < shakeTiles) return false;
+                remainingTiles--;
+                int tileThreshold = getTileThreshold(column, row, tileWidth, tileHeight, width, height, ratio);
+                if (countDifferent(column, row, tileWidth, tileHeight, width, height, tileThreshold) > tileThreshold) {
+                    motionMap[row * tileColumns + column] = TILE_MOVING;
+                    movingTiles++;
+                } else {
+                    motionMap[row * tileColumns + column] = TILE_STILL;
+                }
+            }
+        }
+        return movingTiles >= shakeTiles;
+    }
+
+    private static int getTileThreshold(int column, int row, int tileWidth, int tileHeight, int width, int height, float ratio) {
+        int w = Math.max(0, Math.min(tileWidth, width - column * tileWidth));
+        int h = Math.max(0, Math.min(tileHeight, height - row * tileHeight));
+        return (int) (w * h * ratio / 100);
+    }
+
+    /**
+     * Count different samples of one tile, stops counting once {@code limit} is passed.
+     */
+    private int countDifferent(int column, int row, int tileWidth, int tileHeight, int width, int height, int limit) {
+        int startX = column * tileWidth;
+        int endX = Math.min(startX + tileWidth, width);
+        int startY = row * tileHeight;
+        int endY = Math.min(startY + tileHeight, height);
+        int totDifferentPixels = 0;
+        for (int y = startY; y < endY; y++) {
+            for (int k = y * width + startX, end = y * width + endX; k < end; k++) {
+                int diff = (0xff & mCurrent[k]) - (0xff & mPrevious[k]);
+                if (diff >= mPixelThreshold || diff <= -mPixelThreshold) {
+                    if (++totDifferentPixels > limit) return totDifferentPixels;
+                }
+            }
+        }
+        return totDifferentPixels;
+    }
+
+    /**
+     * Same percentage of different pixels as {@link RgbMotionDetection#detect(int[], int, int, float, float)}.
+     */
+    private static float getRatio(float i, float resolution) {
+        float ratio = resolution / i;
+        if (ratio > 0.5) ratio = i - (ratio * 3);
+        else ratio = i;
+        if (ratio < 5) ratio = 5;
+        return ratio;
+    }
+}
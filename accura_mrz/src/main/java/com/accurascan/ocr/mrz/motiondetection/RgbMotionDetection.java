@@ -45,6 +45,8 @@ public class RgbMotionDetection implements IMotionDetection {
                     totDifferentPixels++;
                     // Paint different pixel red
 //                    first[ij] = Color.RED;
+                    // result is known, no need to compare the remaining pixels
+                    if (totDifferentPixels > mThreshold) return true;
                 }
             }
         }
@@ -0,0 +1,180 @@
+package com.accurascan.ocr.mrz.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of mutable ARGB_8888 bitmaps, keyed by their size.
+ *
+ * <p>The scan loop needs bitmaps of the same few sizes on every frame (crops of the preview, the
+ * {@code 400x400} face of the native face detection). {@link #acquire(int, int)} hands out a pooled
+ * bitmap of the exact size if there is one and {@link #release(Bitmap)} gives it back instead of
+ * recycling it. When the pooled bitmaps need more than the size limit, the sizes not used for the
+ * longest time are evicted and recycled first.
+ *
+ * <p>{@link #registerTrimCallbacks(Context)} trims the pool on memory pressure. Hits, misses and
+ * evictions are counted, see {@link #getStats()}.
+ */
+public final class BitmapPool {
+
+    private static final String TAG = BitmapPool.class.getSimpleName();
+    private static final long DEFAULT_MAX_BYTES = Math.min(Runtime.getRuntime().maxMemory() / 8, 24 * 1024 * 1024);
+    private static final BitmapPool INSTANCE = new BitmapPool(DEFAULT_MAX_BYTES);
+
+    // access order, the least recently used size comes first
+    private final LinkedHashMap<Long, ArrayDeque<Bitmap>> pool = new LinkedHashMap<>(8, 0.75f, true);
+    private long maxBytes;
+    private long bytes = 0;
+    private int hits = 0;
+    private int misses = 0;
+    private int evictions = 0;
+    private ComponentCallbacks2 trimCallbacks = null;
+
+    public static BitmapPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param maxBytes most memory kept by pooled bitmaps
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * @return a mutable ARGB_8888 bitmap of the size, its pixels are undefined if it was pooled
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+        ArrayDeque<Bitmap> bitmaps = pool.get(key(width, height));
+        while (bitmaps != null && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.pollLast();
+            bytes -= bitmap.getAllocationByteCount();
+            if (!bitmap.isRecycled()) {
+                hits++;
+                return bitmap;
+            }
+        }
+        misses++;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Give a bitmap back for reuse, it must not be used by the caller anymore. Bitmaps which can not
+     * be reused (immutable, other config) or do not fit into the pool are recycled.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888 || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        Long key = key(bitmap.getWidth(), bitmap.getHeight());
+        ArrayDeque<Bitmap> bitmaps = pool.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            pool.put(key, bitmaps);
+        }
+        for (Bitmap pooled : bitmaps) {
+            if (pooled == bitmap) return;
+        }
+        bitmaps.addLast(bitmap);
+        bytes += size;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Recycle pooled bitmaps, least recently used sizes first, until the pool needs at most {@code size} bytes.
+     */
+    public synchronized void trimToSize(long size) {
+        Iterator<Map.Entry<Long, ArrayDeque<Bitmap>>> iterator = pool.entrySet().iterator();
+        while (bytes > size && iterator.hasNext()) {
+            ArrayDeque<Bitmap> bitmaps = iterator.next().getValue();
+            while (bytes > size && !bitmaps.isEmpty()) {
+                Bitmap bitmap = bitmaps.pollFirst();
+                bytes -= bitmap.getAllocationByteCount();
+                bitmap.recycle();
+                evictions++;
+            }
+            if (bitmaps.isEmpty()) iterator.remove();
+        }
+    }
+
+    /**
+     * Recycle all pooled bitmaps.
+     */
+    public void trim() {
+        trimToSize(0);
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        trimToSize(this.maxBytes);
+    }
+
+    /**
+     * Trim the pool when the system runs low on memory: all of it once the app is in the background
+     * or memory is critical, half of it when memory gets low while scanning.
+     *
+     * @param context any context, the application context is registered
+     */
+    public synchronized void registerTrimCallbacks(Context context) {
+        if (trimCallbacks != null || context == null) return;
+        trimCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                    trim();
+                } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    trimToSize(getBytes() / 2);
+                }
+                AccuraLog.loge(TAG, "Trim " + level + ", " + getStats());
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trim();
+            }
+        };
+        context.getApplicationContext().registerComponentCallbacks(trimCallbacks);
+    }
+
+    /**
+     * @return memory used by the pooled bitmaps in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    public synchronized int getMissCount() {
+        return misses;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized String getStats() {
+        return "BitmapPool[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", bytes=" + bytes + "/" + maxBytes + "]";
+    }
+
+    private static Long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+}
@@ -21,6 +21,7 @@ import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Point;
 import android.graphics.Rect;
@@ -194,8 +195,20 @@ public class BitmapUtil {
      * @param childWidth
      * @param childHeight
      * @return a decoded bitmap with cropped image
+     * @see #getBitmapFromNV21(byte[], Camera.Size, int, int, int, int, float, float, int, int, Bitmap)
      */
     public static Bitmap getBitmapFromData(byte[] data, Camera.Size size, int format, int mDisplayOrientation, int croppedHeight, int croppedWidth, /*RecogType recogType,*/ float scaleX, float scaleY, int childWidth, int childHeight) {
+        return getBitmapFromData(data, size, format, mDisplayOrientation, croppedHeight, croppedWidth, scaleX, scaleY, childWidth, childHeight, null);
+    }
+
+    /**
+     * Same as {@link #getBitmapFromData(byte[], Camera.Size, int, int, int, int, float, float, int, int)},
+     * the frame is decoded into a bitmap of the {@link BitmapPool} and rotated and cropped in one draw
+     * into {@code reuse} or another pooled bitmap.
+     *
+     * @param reuse bitmap of a previous frame to be filled again if it has the same size, may be null
+     */
+    public static Bitmap getBitmapFromData(byte[] data, Camera.Size size, int format, int mDisplayOrientation, int croppedHeight, int croppedWidth, float scaleX, float scaleY, int childWidth, int childHeight, Bitmap reuse) {
 
         int width;
         int height;
@@ -209,91 +222,57 @@ public class BitmapUtil {
         } else {
             return null;
         }
+        BitmapPool pool = BitmapPool.getInstance();
         try {
-            Bitmap bmCard = null;
-            Bitmap bmp_org = null;
+            Bitmap bmCard;
+            Bitmap bmp_org;
             YuvImage temp = new YuvImage(data, format, width, height, null);
             ByteArrayOutputStream os = new ByteArrayOutputStream();
             temp.compressToJpeg(new Rect(0, 0, temp.getWidth(), temp.getHeight()), 100, os);
-            bmp_org = BitmapFactory.decodeByteArray(os.toByteArray(), 0, os.toByteArray().length);
+            byte[] jpeg = os.toByteArray();
             os.close();
-            Matrix matrix = new Matrix();
-            int rotationDegree = 0;
-            switch (mDisplayOrientation) {
-                case 1: // ROTATION_90:
-                    rotationDegree = 90;
-                    break;
-                case 2: // ROTATION_180:
-                    rotationDegree = 180;
-                    break;
-                case 3: //ROTATION_270:
-                    rotationDegree = 270;
-                    break;
-                default:
-                    break;
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inMutable = true;
+            options.inBitmap = pool.acquire(width, height);
+            try {
+                bmp_org = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+            } catch (IllegalArgumentException e) {
+                // the pooled bitmap does not fit the image
+                pool.release(options.inBitmap);
+                bmp_org = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
             }
-            matrix.postRotate(rotationDegree);
-            Bitmap bmp1 = Bitmap.createBitmap(bmp_org, 0, 0, bmp_org.getWidth(), bmp_org.getHeight(), matrix, true);
+            if (bmp_org == null) return null;
 
-//            if (RecogType.OCR == recogType) {
-            DisplayMetrics dm = Resources.getSystem().getDisplayMetrics();
-            Point centerOfCanvas = new Point(dm.widthPixels / 2, dm.heightPixels / 2);
-            //get viewfinder border size and position on the screen
-            int left = centerOfCanvas.x - (croppedWidth / 2);
-            int top = centerOfCanvas.y - (croppedHeight / 2);
-            int right = centerOfCanvas.x + (croppedWidth / 2);
-            int bottom = centerOfCanvas.y + (croppedHeight / 2);
-            Rect frameRect = new Rect(left, top, right, bottom);
-
-//            if (rotationDegree != 0) {
-                frameRect.left += scaleX;
-                frameRect.top += scaleY;
-                frameRect.right += scaleX;
-                frameRect.bottom += scaleY;
-//            } else {
-//                frameRect.left += scaleY;
-//                frameRect.top += scaleX;
-//                frameRect.right += scaleY;
-//                frameRect.bottom += scaleX;
-//            }
+            int rotationDegree = getRotationDegree(mDisplayOrientation);
+            boolean rotated = rotationDegree == 90 || rotationDegree == 270;
+            int rotatedWidth = rotated ? bmp_org.getHeight() : bmp_org.getWidth();
+            int rotatedHeight = rotated ? bmp_org.getWidth() : bmp_org.getHeight();
 
-            float widthScaleFactor;
-            float heightScaleFactor;
-            //calculate aspect ratio
-            if (rotationDegree != 0) {
-                widthScaleFactor = (float) height / (float) childWidth;
-                heightScaleFactor = (float) (width) / (float) childHeight;
-            } else {
-                widthScaleFactor = (float) width / (float) childWidth;
-                heightScaleFactor = (float) height / (float) childHeight;
+//            if (RecogType.OCR == recogType) {
+            Rect cropRect = getCropRect(width, height, rotationDegree, rotatedWidth, rotatedHeight, croppedHeight, croppedWidth, scaleX, scaleY, childWidth, childHeight);
+            if (cropRect.left < 0 || cropRect.top < 0 || cropRect.right > rotatedWidth || cropRect.bottom > rotatedHeight
+                    || cropRect.width() <= 0 || cropRect.height() <= 0) {
+                pool.release(bmp_org);
+                return null;
             }
-            //calculate position and size for cropping
-//            frameRect.left = (int) (frameRect.left * widthScaleFactor);
-//            frameRect.top = (int) (frameRect.top * heightScaleFactor);
-//            frameRect.right = (int) (frameRect.right * widthScaleFactor);
-//            frameRect.bottom = (int) (frameRect.bottom * heightScaleFactor);
-//            Rect finalrect = new Rect((int) (frameRect.left), (int) (frameRect.top), (int) (frameRect.right), (int) (frameRect.bottom));
-
-            int cropStartX = (int) (frameRect.left * widthScaleFactor);
-            int cropStartY = (int) (frameRect.top * heightScaleFactor);
 
-            int cropWidthX = (int) (frameRect.width() * widthScaleFactor);
-            int cropHeightY = (int) (frameRect.height() * heightScaleFactor);
-
-            if (cropStartX + cropWidthX > bmp1.getWidth()) {
-                cropWidthX = bmp1.getWidth() - cropStartX;
-            }
-            if (cropStartY + cropHeightY > bmp1.getHeight()){
-                cropHeightY = bmp1.getHeight() - cropStartY;
+            if (reuse != null && !reuse.isRecycled() && reuse.isMutable() && reuse.getConfig() == Bitmap.Config.ARGB_8888
+                    && reuse.getWidth() == cropRect.width() && reuse.getHeight() == cropRect.height()) {
+                bmCard = reuse;
+            } else {
+                bmCard = pool.acquire(cropRect.width(), cropRect.height());
             }
-
-
-            bmCard = Bitmap.createBitmap(bmp1, cropStartX, cropStartY, cropWidthX, cropHeightY);
+            // rotate the frame and move the crop to the origin, no rotated full frame is created
+            Matrix matrix = new Matrix();
+            matrix.postRotate(rotationDegree);
+            RectF bounds = new RectF(0, 0, bmp_org.getWidth(), bmp_org.getHeight());
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left - cropRect.left, -bounds.top - cropRect.top);
+            new Canvas(bmCard).drawBitmap(bmp_org, matrix, null);
 //            } else if (RecogType.MRZ == recogType) {
 //                bmCard = BitmapUtil.centerCrop(bmp1, bmp1.getWidth(), bmp1.getHeight() / 3);
 //            }
-            bmp_org.recycle();
-            bmp1.recycle();
+            pool.release(bmp_org);
             return bmCard;
         } catch (Exception e) {
             e.printStackTrace();
@@ -301,6 +280,87 @@ public class BitmapUtil {
         }
     }
 
+    /**
+     * @param mDisplayOrientation rotation index 0 to 3 as returned by {@link Util#getDisplayOrientation(int, int)}
+     * @return clockwise rotation in degrees
+     */
+    public static int getRotationDegree(int mDisplayOrientation) {
+        switch (mDisplayOrientation) {
+            case 1: // ROTATION_90:
+                return 90;
+            case 2: // ROTATION_180:
+                return 180;
+            case 3: //ROTATION_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Scan frame of the screen mapped onto the preview frame after it is rotated by
+     * {@code mDisplayOrientation}, as used by {@link #getBitmapFromData} and {@link #getBitmapFromNV21}.
+     *
+     * @param size                preview size
+     * @param mDisplayOrientation camera orientation
+     * @return crop rectangle in rotated image coordinates
+     */
+    public static Rect getPreviewCropRect(Camera.Size size, int mDisplayOrientation, int croppedHeight, int croppedWidth, float scaleX, float scaleY, int childWidth, int childHeight) {
+        int rotationDegree = getRotationDegree(mDisplayOrientation);
+        boolean swap = rotationDegree == 90 || rotationDegree == 270;
+        return getCropRect(size.width, size.height, rotationDegree, swap ? size.height : size.width, swap ? size.width : size.height, croppedHeight, croppedWidth, scaleX, scaleY, childWidth, childHeight);
+    }
+
+    /**
+     * Map the scan frame shown in the center of the screen onto the rotated camera image.
+     *
+     * @param width         preview width
+     * @param height        preview height
+     * @param rotationDegree clockwise rotation of the preview
+     * @param rotatedWidth  width of the rotated image
+     * @param rotatedHeight height of the rotated image
+     * @return crop rectangle in rotated image coordinates, clamped to the image
+     */
+    private static Rect getCropRect(int width, int height, int rotationDegree, int rotatedWidth, int rotatedHeight, int croppedHeight, int croppedWidth, float scaleX, float scaleY, int childWidth, int childHeight) {
+        DisplayMetrics dm = Resources.getSystem().getDisplayMetrics();
+        Point centerOfCanvas = new Point(dm.widthPixels / 2, dm.heightPixels / 2);
+        //get viewfinder border size and position on the screen
+        int left = centerOfCanvas.x - (croppedWidth / 2);
+        int top = centerOfCanvas.y - (croppedHeight / 2);
+        int right = centerOfCanvas.x + (croppedWidth / 2);
+        int bottom = centerOfCanvas.y + (croppedHeight / 2);
+        Rect frameRect = new Rect(left, top, right, bottom);
+
+        frameRect.left += scaleX;
+        frameRect.top += scaleY;
+        frameRect.right += scaleX;
+        frameRect.bottom += scaleY;
+
+        float widthScaleFactor;
+        float heightScaleFactor;
+        //calculate aspect ratio
+        if (rotationDegree != 0) {
+            widthScaleFactor = (float) height / (float) childWidth;
+            heightScaleFactor = (float) (width) / (float) childHeight;
+        } else {
+            widthScaleFactor = (float) width / (float) childWidth;
+            heightScaleFactor = (float) height / (float) childHeight;
+        }
+
+        int cropStartX = (int) (frameRect.left * widthScaleFactor);
+        int cropStartY = (int) (frameRect.top * heightScaleFactor);
+
+        int cropWidthX = (int) (frameRect.width() * widthScaleFactor);
+        int cropHeightY = (int) (frameRect.height() * heightScaleFactor);
+
+        if (cropStartX + cropWidthX > rotatedWidth) {
+            cropWidthX = rotatedWidth - cropStartX;
+        }
+        if (cropStartY + cropHeightY > rotatedHeight){
+            cropHeightY = rotatedHeight - cropStartY;
+        }
+        return new Rect(cropStartX, cropStartY, cropStartX + cropWidthX, cropStartY + cropHeightY);
+    }
 
 //    @Nullable
 //    public static Bitmap getBitmap(byte[] imageInBuffer, FrameMetadata metadata) {
@@ -0,0 +1,464 @@
+package com.accurascan.ocr.mrz.util;
+
+import com.docrecog.scan.MRZDocumentType;
+
+import java.util.Arrays;
+
+/**
+ * Check digit validation of ICAO 9303 machine readable zones.
+ *
+ * <p>{@link #correct(String, MRZDocumentType)} also repairs the usual OCR confusions: in numeric
+ * positions (dates, check digits) O, I, S and B are read as 0, 1, 5 and 8, in alphabetic positions
+ * (country codes, names) the other way round. In alphanumeric positions (document number, optional
+ * data) the other reading of every single character is tried against the check digit of the field,
+ * the repair is made only if exactly one of them passes. The composite check digit gives no
+ * confirmation here: its weights over the document number and the optional data line up with those
+ * of the field check, so every change passing the field check passes the composite one as well.
+ *
+ * <p>Lines are given as one String with the lines separated by new lines.
+ */
+public final class MrzValidator {
+
+    /**
+     * MRZ layouts of ICAO 9303.
+     */
+    public enum Layout {
+        /** ID card, 3 lines of 30 characters */
+        TD1(3, 30, false),
+        /** ID card, 2 lines of 36 characters */
+        TD2(2, 36, false),
+        /** Passport, 2 lines of 44 characters */
+        TD3(2, 44, false),
+        /** Visa, 2 lines of 44 characters */
+        MRV_A(2, 44, true),
+        /** Visa, 2 lines of 36 characters */
+        MRV_B(2, 36, true);
+
+        public final int lines;
+        public final int length;
+
+        // per position: ALPHA, NUMERIC or ANY
+        private final byte[] types;
+        // per check digit: position of the digit followed by start/end pairs of the checked ranges
+        private final int[][] checks;
+
+        Layout(int lines, int length, boolean visa) {
+            this.lines = lines;
+            this.length = length;
+            this.types = new byte[lines * length];
+            this.checks = defineChecks(lines, length, visa, types);
+        }
+    }
+
+    private static final byte ALPHA = 0;
+    private static final byte NUMERIC = 1;
+    private static final byte ANY = 2;
+
+    private static final int[] WEIGHTS = {7, 3, 1};
+    private static final String DIGITS = "0158";
+    private static final String LETTERS = "OISB";
+    /** More ambiguous characters in one field are not tried, 2^n combinations. */
+    private static final int MAX_AMBIGUOUS = 10;
+    /**
+     * Most characters changed in one field. A check digit is also correct for one of ten random
+     * changes: a field with n ambiguous characters has n single changes but n * (n - 1) / 2 pairs,
+     * so with a few ambiguous characters some wrong pair nearly always passes. Reads needing two
+     * changes, or with more than one single change passing, are left to the vote of several frames
+     * instead.
+     */
+    private static final int MAX_CHANGES = 1;
+
+    private MrzValidator() {
+    }
+
+    /**
+     * @param lines        MRZ lines
+     * @param documentType scanned document type, {@link MRZDocumentType#NONE} for any
+     * @return layout of the lines or null if they do not match a layout of the document type
+     */
+    public static Layout getLayout(String lines, MRZDocumentType documentType) {
+        int[] shape = getShape(lines);
+        if (shape == null) return null;
+        boolean visa = firstChar(lines) == 'V';
+        Layout layout = null;
+        if (shape[0] == 3 && shape[1] == 30) layout = Layout.TD1;
+        else if (shape[0] == 2 && shape[1] == 36) layout = visa ? Layout.MRV_B : Layout.TD2;
+        else if (shape[0] == 2 && shape[1] == 44) layout = visa ? Layout.MRV_A : Layout.TD3;
+        if (layout == null || documentType == null) return layout;
+        switch (documentType) {
+            case PASSPORT_MRZ:
+                return layout == Layout.TD3 ? layout : null;
+            case ID_CARD_MRZ:
+                return layout == Layout.TD1 || layout == Layout.TD2 ? layout : null;
+            case VISA_MRZ:
+                return layout == Layout.MRV_A || layout == Layout.MRV_B ? layout : null;
+            default:
+                return layout;
+        }
+    }
+
+    /**
+     * @return true if the lines match a layout of the document type and all check digits are correct
+     */
+    public static boolean isValid(String lines, MRZDocumentType documentType) {
+        Layout layout = getLayout(lines, documentType);
+        if (layout == null) return false;
+        char[] mrz = toChars(lines, layout);
+        return countValidChecks(mrz, layout) == layout.checks.length;
+    }
+
+    /**
+     * Repair OCR confusions until all check digits are correct. Digits in names and letters in
+     * dates are normalized even if all check digits are correct already, names are not covered by
+     * a check digit.
+     *
+     * @param lines        MRZ lines
+     * @param documentType scanned document type, {@link MRZDocumentType#NONE} for any
+     * @return corrected lines, the same String if nothing had to be changed, or null if they could
+     * not be corrected or more than one repair passes the check digits
+     */
+    public static String correct(String lines, MRZDocumentType documentType) {
+        Layout layout = getLayout(lines, documentType);
+        if (layout == null) return null;
+        char[] mrz = toChars(lines, layout);
+        if (!correct(mrz, layout)) return null;
+        return Arrays.equals(mrz, toChars(lines, layout)) ? lines : toLines(mrz, layout);
+    }
+
+    /**
+     * Same as {@link #correct(String, MRZDocumentType)} on characters of a known layout.
+     *
+     * @param mrz    all lines without separators, corrected in place
+     * @param layout layout of the lines
+     * @return true if all check digits are correct, false also if a repair is ambiguous
+     */
+    public static boolean correct(char[] mrz, Layout layout) {
+        byte[] types = layout.types;
+        normalize(mrz, layout);
+
+        // the last check of TD1, TD2 and TD3 is the composite one, it is fixed after the fields
+        int[][] checks = layout.checks;
+        int fields = layout == Layout.MRV_A || layout == Layout.MRV_B ? checks.length : checks.length - 1;
+        boolean valid = true;
+        for (int c = 0; c < fields; c++) {
+            if (!isValid(mrz, checks[c]) && !tryAmbiguous(mrz, checks[c], types, checks, c)) {
+                valid = false;
+            }
+        }
+        if (fields < checks.length && valid && !isValid(mrz, checks[fields])) {
+            valid = tryAmbiguous(mrz, checks[fields], types, checks, fields);
+        }
+        return valid && countValidChecks(mrz, layout) == checks.length;
+    }
+
+    /**
+     * Only the corrections which do not depend on a check digit: digits in numeric positions and
+     * letters in alphabetic positions.
+     *
+     * @param mrz    all lines without separators, corrected in place
+     * @param layout layout of the lines
+     */
+    public static void normalize(char[] mrz, Layout layout) {
+        byte[] types = layout.types;
+        for (int i = 0; i < mrz.length; i++) {
+            if (types[i] == NUMERIC) mrz[i] = toDigit(mrz[i]);
+            else if (types[i] == ALPHA) mrz[i] = toLetter(mrz[i]);
+        }
+    }
+
+    /**
+     * @param mrz    all lines without separators
+     * @param layout layout of the lines
+     * @return number of correct check digits
+     */
+    public static int countValidChecks(char[] mrz, Layout layout) {
+        int count = 0;
+        for (int[] check : layout.checks) {
+            if (isValid(mrz, check)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Check one line on its own: the check digits lying completely in the line must be correct.
+     * Lines without such a check digit (e.g. the names) must only contain letters in alphabetic
+     * positions, digits in numeric positions and MRZ characters.
+     *
+     * @param mrz    all lines without separators
+     * @param layout layout of the lines
+     * @param line   index of the line
+     * @return true if the line is valid on its own
+     */
+    public static boolean isLineValid(char[] mrz, Layout layout, int line) {
+        int start = line * layout.length;
+        int end = start + layout.length;
+        for (int i = start; i < end; i++) {
+            char c = mrz[i];
+            if (c == '<') continue;
+            boolean digit = c >= '0' && c <= '9';
+            boolean letter = c >= 'A' && c <= 'Z';
+            if (!digit && !letter) return false;
+            if (layout.types[i] == ALPHA && digit) return false;
+            if (layout.types[i] == NUMERIC && letter) return false;
+        }
+        for (int[] check : layout.checks) {
+            if (isInside(check, start, end) && !isValid(mrz, check)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of check digits lying completely in the line
+     */
+    public static int getCheckCount(Layout layout, int line) {
+        int start = line * layout.length;
+        int end = start + layout.length;
+        int count = 0;
+        for (int[] check : layout.checks) {
+            if (isInside(check, start, end)) count++;
+        }
+        return count;
+    }
+
+    private static boolean isInside(int[] check, int start, int end) {
+        if (check[0] < start || check[0] >= end) return false;
+        for (int r = 1; r < check.length; r += 2) {
+            if (check[r] < start || check[r + 1] > end) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of check digits of the layout
+     */
+    public static int getCheckCount(Layout layout) {
+        return layout.checks.length;
+    }
+
+    /**
+     * @return ICAO 9303 check digit of the characters from start (inclusive) to end (exclusive)
+     */
+    public static int checkDigit(CharSequence value, int start, int end) {
+        int sum = 0;
+        for (int i = start, w = 0; i < end; i++, w++) {
+            sum += value(value.charAt(i)) * WEIGHTS[w % 3];
+        }
+        return sum % 10;
+    }
+
+    /**
+     * Copy the lines without separators into an array of the layout size.
+     */
+    public static char[] toChars(String lines, Layout layout) {
+        char[] mrz = new char[layout.lines * layout.length];
+        for (int i = 0, k = 0; i < lines.length() && k < mrz.length; i++) {
+            char c = lines.charAt(i);
+            if (c != '\n' && c != '\r') mrz[k++] = c;
+        }
+        return mrz;
+    }
+
+    public static String toLines(char[] mrz, Layout layout) {
+        StringBuilder builder = new StringBuilder(layout.lines * (layout.length + 1));
+        for (int line = 0; line < layout.lines; line++) {
+            if (line > 0) builder.append('\n');
+            builder.append(mrz, line * layout.length, layout.length);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Try the other reading of the ambiguous characters in the ranges of one check, fewest changes
+     * first. The characters are changed only if exactly one combination of the fewest changes
+     * passes, otherwise they are left as read. Positions checked by an earlier, already correct
+     * check are not changed.
+     */
+    private static boolean tryAmbiguous(char[] mrz, int[] check, byte[] types, int[][] checks, int index) {
+        int[] positions = new int[MAX_AMBIGUOUS];
+        int count = 0;
+        for (int r = 1; r < check.length; r += 2) {
+            for (int i = check[r]; i < check[r + 1]; i++) {
+                if (types[i] != ANY || partner(mrz[i]) == 0 || isCoveredBefore(i, checks, index)) continue;
+                if (count == MAX_AMBIGUOUS) return false;
+                positions[count++] = i;
+            }
+        }
+        if (count == 0) return false;
+
+        char[] original = new char[count];
+        for (int i = 0; i < count; i++) original[i] = mrz[positions[i]];
+        for (int changes = 1; changes <= Math.min(count, MAX_CHANGES); changes++) {
+            int found = 0, passed = 0;
+            for (int mask = 1; mask < (1 << count); mask++) {
+                if (Integer.bitCount(mask) != changes) continue;
+                setChanged(mrz, positions, original, mask);
+                if (isValid(mrz, check)) {
+                    found = mask;
+                    passed++;
+                }
+            }
+            // more than one passing change, the check digit can not tell which one is right
+            setChanged(mrz, positions, original, passed == 1 ? found : 0);
+            if (passed > 0) return passed == 1;
+        }
+        return false;
+    }
+
+    /**
+     * Set the characters at the positions to their other reading where the mask has a bit, else to
+     * the original.
+     */
+    private static void setChanged(char[] mrz, int[] positions, char[] original, int mask) {
+        for (int i = 0; i < original.length; i++) {
+            mrz[positions[i]] = (mask & (1 << i)) != 0 ? partner(original[i]) : original[i];
+        }
+    }
+
+    private static boolean isCoveredBefore(int position, int[][] checks, int index) {
+        for (int c = 0; c < index; c++) {
+            int[] check = checks[c];
+            for (int r = 1; r < check.length; r += 2) {
+                if (position >= check[r] && position < check[r + 1]) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isValid(char[] mrz, int[] check) {
+        int sum = 0, w = 0;
+        for (int r = 1; r < check.length; r += 2) {
+            for (int i = check[r]; i < check[r + 1]; i++, w++) {
+                sum += value(mrz[i]) * WEIGHTS[w % 3];
+            }
+        }
+        char c = mrz[check[0]];
+        // an empty optional field may have a filler as check digit
+        int digit = c == '<' ? 0 : c - '0';
+        return digit == sum % 10;
+    }
+
+    private static int value(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 10;
+        return 0;
+    }
+
+    private static char toDigit(char c) {
+        int index = LETTERS.indexOf(c);
+        return index < 0 ? c : DIGITS.charAt(index);
+    }
+
+    private static char toLetter(char c) {
+        int index = DIGITS.indexOf(c);
+        return index < 0 ? c : LETTERS.charAt(index);
+    }
+
+    /**
+     * @return the character it is usually confused with, 0 if none
+     */
+    private static char partner(char c) {
+        int index = DIGITS.indexOf(c);
+        if (index >= 0) return LETTERS.charAt(index);
+        index = LETTERS.indexOf(c);
+        if (index >= 0) return DIGITS.charAt(index);
+        return 0;
+    }
+
+    private static char firstChar(String lines) {
+        for (int i = 0; i < lines.length(); i++) {
+            char c = lines.charAt(i);
+            if (c != '\n' && c != '\r') return c;
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of lines and their length, null if the lines are not all of the same length
+     */
+    private static int[] getShape(String lines) {
+        if (lines == null) return null;
+        int rows = 0, columns = -1, length = 0;
+        for (int i = 0; i <= lines.length(); i++) {
+            char c = i < lines.length() ? lines.charAt(i) : '\n';
+            if (c == '\r') continue;
+            if (c == '\n') {
+                if (length > 0) {
+                    if (columns >= 0 && columns != length) return null;
+                    columns = length;
+                    rows++;
+                }
+                length = 0;
+            } else {
+                length++;
+            }
+        }
+        if (rows == 0) return null;
+        return new int[]{rows, columns};
+    }
+
+    private static void type(byte[] types, int from, int to, byte type) {
+        for (int i = from; i < to; i++) types[i] = type;
+    }
+
+    /**
+     * Called from the Layout constructor, the Layout constants can not be used here yet.
+     */
+    private static int[][] defineChecks(int lines, int length, boolean visa, byte[] types) {
+        int l2 = length;
+        // line 1 of all layouts: document code, issuing state
+        type(types, 0, types.length, ALPHA);
+        if (lines == 3) {
+            // TD1
+            int l3 = 2 * l2;
+            type(types, 5, 14, ANY);              // document number
+            type(types, 14, 15, NUMERIC);
+            type(types, 15, 30, ANY);             // optional data
+            type(types, l2, l2 + 7, NUMERIC);      // birth and check
+            type(types, l2 + 8, l2 + 15, NUMERIC); // expiry and check
+            type(types, l2 + 18, l2 + 29, ANY);    // optional data
+            type(types, l2 + 29, l2 + 30, NUMERIC);
+            type(types, l3, l3 + l2, ALPHA);       // names
+            return new int[][]{
+                    {14, 5, 14},
+                    {l2 + 6, l2, l2 + 6},
+                    {l2 + 14, l2 + 8, l2 + 14},
+                    {l2 + 29, 5, 30, l2, l2 + 7, l2 + 8, l2 + 15, l2 + 18, l2 + 29}
+            };
+        }
+
+        type(types, l2, l2 + 9, ANY);              // document number
+        type(types, l2 + 9, l2 + 10, NUMERIC);
+        type(types, l2 + 13, l2 + 20, NUMERIC);    // birth and check
+        type(types, l2 + 21, l2 + 28, NUMERIC);    // expiry and check
+        if (visa) {
+            // MRV-A and MRV-B, optional data without check digit
+            type(types, l2 + 28, l2 + l2, ANY);
+            return new int[][]{
+                    {l2 + 9, l2, l2 + 9},
+                    {l2 + 19, l2 + 13, l2 + 19},
+                    {l2 + 27, l2 + 21, l2 + 27}
+            };
+        } else if (length == 44) {
+            // TD3
+            type(types, l2 + 28, l2 + 42, ANY); // personal number
+            type(types, l2 + 42, l2 + 44, NUMERIC);
+            return new int[][]{
+                    {l2 + 9, l2, l2 + 9},
+                    {l2 + 19, l2 + 13, l2 + 19},
+                    {l2 + 27, l2 + 21, l2 + 27},
+                    {l2 + 42, l2 + 28, l2 + 42},
+                    {l2 + 43, l2, l2 + 10, l2 + 13, l2 + 20, l2 + 21, l2 + 43}
+            };
+        } else {
+            // TD2
+            type(types, l2 + 28, l2 + 35, ANY); // optional data
+            type(types, l2 + 35, l2 + 36, NUMERIC);
+            return new int[][]{
+                    {l2 + 9, l2, l2 + 9},
+                    {l2 + 19, l2 + 13, l2 + 19},
+                    {l2 + 27, l2 + 21, l2 + 27},
+                    {l2 + 35, l2, l2 + 10, l2 + 13, l2 + 20, l2 + 21, l2 + 35}
+            };
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.docrecog.scan;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.accurascan.ocr.mrz.util.AccuraLog;
+import com.accurascan.ocr.mrz.util.BitmapPool;
+
+/**
+ * The best few recent frames of a scan, so that the document and face images of the result come
+ * from the sharpest frame instead of the frame which happened to complete the read.
+ *
+ * <p>Frames are scored with what the scan has measured anyway: the sharpness and glare of
+ * {@link FrameQuality} and the confidence of a face found by {@link RecogEngine#detectFace(Bitmap)}.
+ * The Laplacian variance has no scale which holds across devices and documents, so sharpness only
+ * counts relative to the sharpest of the frames compared. {@link #offer} copies a frame into a
+ * pooled bitmap only if it beats a kept one, {@link #takeBest} compares the kept frames to the
+ * completing frame and hands out copies of the winner. Frames older than {@link #MAX_AGE_MS} are
+ * dropped, the document may have moved since.
+ */
+final class BestFrameRing {
+
+    private static final String TAG = BestFrameRing.class.getSimpleName();
+    static final int CAPACITY = 3;
+    static final long MAX_AGE_MS = 1500;
+    // glare is worse than blur, 20% glare pixels zero the score
+    private static final float GLARE_WEIGHT = 5f;
+
+    /**
+     * Images of a frame, owned by whoever took them from the ring.
+     */
+    static final class Candidate {
+        Bitmap document;
+        Bitmap face;
+        private float sharpness;
+        private float glare;
+        // 1 for a frame without face
+        private float faceFactor = 1;
+        private long time;
+    }
+
+    private final Candidate[] candidates = new Candidate[CAPACITY];
+
+    /**
+     * Keep a frame which did not complete the scan if it scores better than a kept one.
+     *
+     * @param image     document image of the frame, copied if kept
+     * @param sharpness {@link FrameQuality#getSharpness()} of the frame, negative if not measured
+     * @param glare     {@link FrameQuality#getGlare()} of the frame
+     * @param face      accepted face of the frame or null, the ring takes it over
+     */
+    synchronized void offer(FrameImage image, float sharpness, float glare, RecogEngine.FaceResult face) {
+        Bitmap faceBitmap = face != null && face.state == RecogEngine.FaceResult.ACCEPTED ? face.face : null;
+        if (sharpness < 0) {
+            if (face != null) face.release();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        dropExpired(now);
+        float faceFactor = faceBitmap != null ? getFaceFactor(face.confidence) : 1;
+        float maxSharpness = getMaxSharpness(sharpness);
+        float score = getQuality(sharpness, glare, maxSharpness) * faceFactor;
+
+        int slot = -1;
+        float slotScore = 0;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (candidates[i] == null) {
+                slot = i;
+                break;
+            }
+            float kept = getQuality(candidates[i].sharpness, candidates[i].glare, maxSharpness) * candidates[i].faceFactor;
+            if (kept < score && (slot < 0 || kept < slotScore)) {
+                slot = i;
+                slotScore = kept;
+            }
+        }
+        if (slot < 0) {
+            if (face != null) face.release();
+            return;
+        }
+        release(candidates[slot]);
+        if (face != null && faceBitmap == null) face.release();
+
+        Candidate candidate = new Candidate();
+        candidate.document = copy(image.get());
+        candidate.face = faceBitmap;
+        candidate.sharpness = sharpness;
+        candidate.glare = glare;
+        candidate.faceFactor = faceFactor;
+        candidate.time = now;
+        candidates[slot] = candidate;
+    }
+
+    /**
+     * Pick the images of the result from the kept frames and the frame which completed the scan,
+     * and empty the ring.
+     *
+     * @param image          document image of the completing frame
+     * @param sharpness      sharpness of the completing frame, negative if not measured
+     * @param glare          glare of the completing frame
+     * @param face           face of the completing frame, null if the result needs no face
+     * @param faceConfidence confidence of that face
+     * @return immutable copies of the document of the best frame and of its face, or of the face of
+     * the completing frame if the best frame has none; both are owned by the caller
+     */
+    synchronized Candidate takeBest(FrameImage image, float sharpness, float glare, Bitmap face, float faceConfidence) {
+        dropExpired(System.currentTimeMillis());
+        Candidate best = null;
+        if (sharpness >= 0) {
+            float faceFactor = face != null ? getFaceFactor(faceConfidence) : 1;
+            float maxSharpness = getMaxSharpness(sharpness);
+            float bestScore = getQuality(sharpness, glare, maxSharpness) * faceFactor;
+            for (Candidate candidate : candidates) {
+                if (candidate == null) continue;
+                // a frame without face is judged with the face of the completing frame
+                float quality = getQuality(candidate.sharpness, candidate.glare, maxSharpness);
+                float score = face == null ? quality
+                        : candidate.face != null ? quality * candidate.faceFactor : quality * faceFactor;
+                if (score > bestScore) {
+                    best = candidate;
+                    bestScore = score;
+                }
+            }
+        }
+
+        // the kept bitmaps are mutable and pooled, the result gets plain copies
+        Candidate result = new Candidate();
+        if (best == null) {
+            result.document = image.commit();
+        } else {
+            AccuraLog.loge(TAG, "Best frame " + (System.currentTimeMillis() - best.time) + "ms old");
+            result.document = best.document.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        if (face != null) {
+            Bitmap source = best != null && best.face != null ? best.face : face;
+            result.face = source.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        clear();
+        return result;
+    }
+
+    /**
+     * Release all kept frames.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            release(candidates[i]);
+            candidates[i] = null;
+        }
+    }
+
+    /**
+     * @param sharpness    Laplacian variance
+     * @param glare        part of glare pixels
+     * @param maxSharpness Laplacian variance of the sharpest frame compared
+     * @return 0 to 1
+     */
+    static float getQuality(float sharpness, float glare, float maxSharpness) {
+        float relative = maxSharpness > 0 ? Math.min(1, sharpness / maxSharpness) : 1;
+        return relative * Math.max(0, 1 - glare * GLARE_WEIGHT);
+    }
+
+    /**
+     * @param faceConfidence face detection confidence, 0 to 1 or percent
+     * @return 0.5 to 1
+     */
+    static float getFaceFactor(float faceConfidence) {
+        float confidence = faceConfidence > 1 ? faceConfidence / 100 : faceConfidence;
+        return 0.5f + 0.5f * Math.max(0, Math.min(1, confidence));
+    }
+
+    private float getMaxSharpness(float sharpness) {
+        for (Candidate candidate : candidates) {
+            if (candidate != null) sharpness = Math.max(sharpness, candidate.sharpness);
+        }
+        return sharpness;
+    }
+
+    private void dropExpired(long now) {
+        for (int i = 0; i < CAPACITY; i++) {
+            if (candidates[i] != null && now - candidates[i].time > MAX_AGE_MS) {
+                release(candidates[i]);
+                candidates[i] = null;
+            }
+        }
+    }
+
+    private static Bitmap copy(Bitmap bitmap) {
+        Bitmap copy = BitmapPool.getInstance().acquire(bitmap.getWidth(), bitmap.getHeight());
+        new Canvas(copy).drawBitmap(bitmap, 0, 0, null);
+        return copy;
+    }
+
+    private static void release(Candidate candidate) {
+        if (candidate == null) return;
+        BitmapPool pool = BitmapPool.getInstance();
+        pool.release(candidate.document);
+        pool.release(candidate.face);
+    }
+}
@@ -0,0 +1,61 @@
+package com.docrecog.scan;
+
+import android.graphics.Bitmap;
+
+/**
+ * Reference counted, read-only handle to the document bitmap of one frame.
+ *
+ * <p>All stages of a frame (MRZ read, face detection, result assembly) read the same pixels
+ * through {@link #get()} instead of copying them. A real copy is made only by {@link #commit()}, when
+ * an image is kept in the {@link com.accurascan.ocr.mrz.model.RecogResult}, so frames which are
+ * rejected later cost no copy at all.
+ *
+ * <p>Whoever creates the handle owns the first reference, stages which keep the image beyond a call
+ * take one more by {@link #retain()}. Once every reference is released the bitmap belongs to its
+ * creator again and may be refilled with the next frame; see {@link #isReleased()}.
+ */
+final class FrameImage {
+
+    private final Bitmap bitmap;
+    private int references = 1;
+
+    FrameImage(Bitmap bitmap) {
+        if (bitmap == null) throw new NullPointerException("bitmap");
+        this.bitmap = bitmap;
+    }
+
+    synchronized FrameImage retain() {
+        checkReferenced();
+        references++;
+        return this;
+    }
+
+    synchronized void release() {
+        checkReferenced();
+        references--;
+    }
+
+    synchronized boolean isReleased() {
+        return references == 0;
+    }
+
+    /**
+     * @return the shared bitmap, it must not be modified or recycled
+     */
+    synchronized Bitmap get() {
+        checkReferenced();
+        return bitmap;
+    }
+
+    /**
+     * @return immutable copy of the image owned by the caller
+     */
+    synchronized Bitmap commit() {
+        checkReferenced();
+        return bitmap.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    private void checkReferenced() {
+        if (references <= 0) throw new IllegalStateException("Frame image already released");
+    }
+}
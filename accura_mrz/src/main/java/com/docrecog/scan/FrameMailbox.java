@@ -0,0 +1,152 @@
+package com.docrecog.scan;
+
+import android.hardware.Camera;
+
+/**
+ * Single-slot hand-off between the camera preview callback and the recognition worker.
+ *
+ * <p>Only the most recent preview frame is kept. If the worker is still busy when a new frame
+ * arrives, the waiting frame is replaced (superseded) instead of queueing up, so the worker always
+ * picks up the freshest frame once it is free. Frames taken while recognition is not armed are
+ * counted as skipped, see {@link #onSkipped()}.
+ */
+final class FrameMailbox {
+
+    static final class Frame {
+        final byte[] data;
+        final Camera camera;
+
+        private Frame(byte[] data, Camera camera) {
+            this.data = data;
+            this.camera = camera;
+        }
+    }
+
+    private final Object lock = new Object();
+    private Frame pending = null;
+    private boolean open = false;
+
+    private long submittedCount = 0;
+    private long supersededCount = 0;
+    private long processedCount = 0;
+    private long skippedCount = 0;
+
+    /**
+     * Allow frames to be posted and taken. Counters are reset for the new session.
+     */
+    void open() {
+        synchronized (lock) {
+            open = true;
+            pending = null;
+            submittedCount = 0;
+            supersededCount = 0;
+            processedCount = 0;
+            skippedCount = 0;
+        }
+    }
+
+    /**
+     * Drop any waiting frame and wake up the worker so it can exit.
+     */
+    void close() {
+        synchronized (lock) {
+            open = false;
+            pending = null;
+            lock.notifyAll();
+        }
+    }
+
+    boolean isOpen() {
+        synchronized (lock) {
+            return open;
+        }
+    }
+
+    /**
+     * Post a frame for recognition, replacing the frame that is still waiting, if any.
+     *
+     * @param data   preview frame data
+     * @param camera camera which delivered the frame
+     * @return the frame which will not be processed, so its buffer can be reused: the superseded
+     * frame, the given frame itself if the mailbox is closed, or null
+     */
+    Frame offer(byte[] data, Camera camera) {
+        synchronized (lock) {
+            Frame frame = new Frame(data, camera);
+            if (!open) return frame;
+            Frame superseded = pending;
+            if (superseded != null) supersededCount++;
+            pending = frame;
+            submittedCount++;
+            lock.notifyAll();
+            return superseded;
+        }
+    }
+
+    /**
+     * Wait for the next frame.
+     *
+     * @return the latest frame or null if the mailbox has been closed
+     */
+    Frame take() {
+        synchronized (lock) {
+            while (open && pending == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            Frame frame = pending;
+            pending = null;
+            return frame;
+        }
+    }
+
+    void onProcessed() {
+        synchronized (lock) {
+            processedCount++;
+        }
+    }
+
+    /**
+     * A taken frame was dropped without recognition, e.g. because the scan is stopped.
+     */
+    void onSkipped() {
+        synchronized (lock) {
+            skippedCount++;
+        }
+    }
+
+    long getSubmittedCount() {
+        synchronized (lock) {
+            return submittedCount;
+        }
+    }
+
+    long getSupersededCount() {
+        synchronized (lock) {
+            return supersededCount;
+        }
+    }
+
+    long getProcessedCount() {
+        synchronized (lock) {
+            return processedCount;
+        }
+    }
+
+    long getSkippedCount() {
+        synchronized (lock) {
+            return skippedCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "submitted=" + submittedCount + ", processed=" + processedCount + ", superseded=" + supersededCount
+                    + ", skipped=" + skippedCount;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.docrecog.scan;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.accurascan.ocr.mrz.util.BitmapPool;
+
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+
+/**
+ * OpenCV {@link Mat}s used while checking one camera frame.
+ *
+ * <p>The frame bitmap is converted by {@link Utils#bitmapToMat(Bitmap, Mat)} only once between
+ * {@link #begin()} and {@link #end()}, every native check of that frame gets the same Mat. Mats are
+ * taken from a small pool and given back at the end of the frame, so their native buffers are
+ * reused by the next frame instead of being allocated again.
+ *
+ * <p>A frame can also be built straight from the NV21 camera data by
+ * {@link #getNV21(byte[], int, int, int, Rect)}, in that case no Bitmap is needed for the native checks.
+ *
+ * <p>Outside of a frame nothing is cached and a Mat is only valid until the next call of
+ * {@link #get(Bitmap)} or {@link #acquire()}.
+ */
+final class FrameMatContext {
+
+    private static final int MAX_POOLED_MATS = 6;
+
+    private final ArrayList<Mat> pool = new ArrayList<>();
+    private final ArrayList<Mat> inUse = new ArrayList<>();
+    private Bitmap frameBitmap = null;
+    private Mat frameMat = null;
+    private boolean inFrame = false;
+    // NV21 data of the scan area only, reused by every frame
+    private byte[] areaNV21 = new byte[0];
+
+    /**
+     * Start a new frame, Mats of the previous frame are given back to the pool.
+     */
+    synchronized void begin() {
+        end();
+        inFrame = true;
+    }
+
+    /**
+     * End of the frame, all Mats handed out since {@link #begin()} go back to the pool.
+     * They must not be used anymore by the caller.
+     */
+    synchronized void end() {
+        for (Mat mat : inUse) {
+            if (pool.size() < MAX_POOLED_MATS) pool.add(mat);
+            else mat.release();
+        }
+        inUse.clear();
+        frameBitmap = null;
+        frameMat = null;
+        inFrame = false;
+    }
+
+    synchronized boolean isInFrame() {
+        return inFrame;
+    }
+
+    /**
+     * @param bitmap frame bitmap
+     * @return Mat of the bitmap, converted once per frame
+     */
+    synchronized Mat get(Bitmap bitmap) {
+        if (inFrame && bitmap == frameBitmap && frameMat != null) {
+            return frameMat;
+        }
+        Mat mat = acquire();
+        Utils.bitmapToMat(bitmap, mat);
+        if (inFrame) {
+            frameBitmap = bitmap;
+            frameMat = mat;
+        }
+        return mat;
+    }
+
+    /**
+     * Convert the scan area of a NV21 frame into a RGBA Mat, the same layout as
+     * {@link Utils#bitmapToMat(Bitmap, Mat)} gives for the cropped frame bitmap. Only the rows and
+     * columns of the area are copied out of the frame and converted, the area is widened to even
+     * coordinates for the 2x2 subsampled VU plane and cut back to its size after the conversion.
+     *
+     * @param nv21           NV21 preview frame
+     * @param width          preview width
+     * @param height         preview height
+     * @param rotationDegree clockwise rotation of the preview, 0, 90, 180 or 270
+     * @param cropRect       scan area in rotated image coordinates
+     * @return RGBA Mat of the scan area, valid until {@link #end()}, or null if the area is outside the frame
+     */
+    synchronized Mat getNV21(byte[] nv21, int width, int height, int rotationDegree, Rect cropRect) {
+        Rect area = toSensorRect(width, height, rotationDegree, cropRect, new Rect());
+        if (area == null) {
+            return null;
+        }
+        int left = area.left & ~1, top = area.top & ~1;
+        int right = Math.min(width & ~1, (area.right + 1) & ~1);
+        int bottom = Math.min(height & ~1, (area.bottom + 1) & ~1);
+        int w = right - left, h = bottom - top;
+        if (right < area.right || bottom < area.bottom || nv21.length < width * height * 3 / 2) {
+            return null;
+        }
+
+        int size = w * h * 3 / 2;
+        if (areaNV21.length < size) {
+            areaNV21 = new byte[size];
+        }
+        for (int y = 0; y < h; y++) {
+            System.arraycopy(nv21, (top + y) * width + left, areaNV21, y * w, w);
+        }
+        // one VU row for every two luma rows, left is even so the VU pairs stay aligned
+        int vu = width * height + top / 2 * width + left;
+        for (int y = 0; y < h / 2; y++) {
+            System.arraycopy(nv21, vu + y * width, areaNV21, (h + y) * w, w);
+        }
+
+        Mat yuv = acquire();
+        yuv.create(h + h / 2, w, CvType.CV_8UC1);
+        yuv.put(0, 0, areaNV21, 0, size);
+        Mat rgba = acquire();
+        Imgproc.cvtColor(yuv, rgba, Imgproc.COLOR_YUV2RGBA_NV21);
+
+        Mat dst = acquire();
+        Mat roi = rgba.submat(area.top - top, area.bottom - top, area.left - left, area.right - left);
+        switch (rotationDegree) {
+            case 90:
+                Core.rotate(roi, dst, Core.ROTATE_90_CLOCKWISE);
+                break;
+            case 180:
+                Core.rotate(roi, dst, Core.ROTATE_180);
+                break;
+            case 270:
+                Core.rotate(roi, dst, Core.ROTATE_90_COUNTERCLOCKWISE);
+                break;
+            default:
+                roi.copyTo(dst);
+                break;
+        }
+        roi.release();
+
+        if (inFrame) {
+            frameBitmap = null;
+            frameMat = dst;
+        }
+        return dst;
+    }
+
+    /**
+     * Map the scan area of the rotated image back to the sensor (NV21) coordinates.
+     *
+     * @param width          preview width
+     * @param height         preview height
+     * @param rotationDegree clockwise rotation of the preview, 0, 90, 180 or 270
+     * @param cropRect       scan area in rotated image coordinates
+     * @param out            receives the scan area in sensor coordinates
+     * @return {@code out}, or null if the area is outside the frame
+     */
+    static Rect toSensorRect(int width, int height, int rotationDegree, Rect cropRect, Rect out) {
+        int left, top, right, bottom;
+        switch (rotationDegree) {
+            case 90:
+                left = cropRect.top;
+                right = cropRect.bottom;
+                top = height - cropRect.right;
+                bottom = height - cropRect.left;
+                break;
+            case 180:
+                left = width - cropRect.right;
+                right = width - cropRect.left;
+                top = height - cropRect.bottom;
+                bottom = height - cropRect.top;
+                break;
+            case 270:
+                left = width - cropRect.bottom;
+                right = width - cropRect.top;
+                top = cropRect.left;
+                bottom = cropRect.right;
+                break;
+            default:
+                left = cropRect.left;
+                right = cropRect.right;
+                top = cropRect.top;
+                bottom = cropRect.bottom;
+                break;
+        }
+        if (left < 0 || top < 0 || right > width || bottom > height || right <= left || bottom <= top) {
+            return null;
+        }
+        out.set(left, top, right, bottom);
+        return out;
+    }
+
+    /**
+     * Create the frame bitmap from a Mat of this context.
+     *
+     * @param mat   RGBA Mat
+     * @param reuse bitmap to be filled again if it has the same size, may be null
+     * @return {@code reuse} or an ARGB_8888 bitmap of the {@link BitmapPool}
+     */
+    static Bitmap toBitmap(Mat mat, Bitmap reuse) {
+        Bitmap bitmap;
+        if (reuse != null && !reuse.isRecycled() && reuse.isMutable() && reuse.getConfig() == Bitmap.Config.ARGB_8888
+                && reuse.getWidth() == mat.cols() && reuse.getHeight() == mat.rows()) {
+            bitmap = reuse;
+        } else {
+            bitmap = BitmapPool.getInstance().acquire(mat.cols(), mat.rows());
+        }
+        Utils.matToBitmap(mat, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * @return Mat from the pool which stays valid until {@link #end()}
+     */
+    synchronized Mat acquire() {
+        if (!inFrame) end();
+        Mat mat = pool.isEmpty() ? new Mat() : pool.remove(pool.size() - 1);
+        inUse.add(mat);
+        return mat;
+    }
+
+    /**
+     * Release the native memory of all Mats.
+     */
+    synchronized void release() {
+        end();
+        for (Mat mat : pool) {
+            mat.release();
+        }
+        pool.clear();
+    }
+}
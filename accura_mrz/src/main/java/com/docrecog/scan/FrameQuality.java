@@ -0,0 +1,108 @@
+package com.docrecog.scan;
+
+import android.graphics.Rect;
+
+/**
+ * Focus and glare of the scan area, measured on the luma (Y) plane of a NV21 frame before any
+ * conversion or native call.
+ *
+ * <p>Sharpness is the variance of the Laplacian ({@code 4 * center - left - right - top - bottom})
+ * at every few pixels of the scan area, a blurred document has weak edges and a low variance. Glare
+ * is the part of those pixels which are saturated.
+ *
+ * <p>This is a heuristic and not a second blur or glare check: the native checks configured with
+ * {@link RecogEngine#setBlurPercentage(android.content.Context, int)} and
+ * {@link RecogEngine#setGlarePercentage(android.content.Context, int, int)} can not be reproduced
+ * here, so their values only switch the matching pre-check on. The fixed limits reject only frames
+ * which no native setting would read: a scan area flatter than sensor noise, or one with half of its
+ * pixels burnt out. All other frames go on to the native checks.
+ */
+final class FrameQuality {
+
+    static final int OK = 0;
+    static final int BLURRED = 1;
+    static final int GLARE = 2;
+
+    // samples per side of the scan area
+    private static final int MAX_SAMPLES = 160;
+    // noise of a single grey level alone gives a Laplacian variance of 20, a frame below this has no edges at all
+    static final float MIN_SHARPNESS = 10f;
+    // luma of a saturated pixel
+    static final int GLARE_LEVEL = 250;
+    // part of saturated pixels from which the scan area is burnt out
+    static final float MAX_GLARE = 0.5f;
+
+    private float sharpness = -1;
+    private float glare = 0;
+
+    /**
+     * @return Laplacian variance of the last measured frame, negative if it could not be measured
+     */
+    float getSharpness() {
+        return sharpness;
+    }
+
+    /**
+     * @return part of saturated pixels of the last measured frame, 0 to 1
+     */
+    float getGlare() {
+        return glare;
+    }
+
+    /**
+     * Measure the scan area of a frame and compare it to the limits.
+     *
+     * @param nv21       NV21 preview frame
+     * @param width      preview width
+     * @param height     preview height
+     * @param sensorRect scan area in sensor (not rotated) coordinates
+     * @param checkBlur  true to reject frames without edges
+     * @param checkGlare true to reject burnt out frames
+     * @return {@link #OK}, {@link #BLURRED} or {@link #GLARE}
+     */
+    int check(byte[] nv21, int width, int height, Rect sensorRect, boolean checkBlur, boolean checkGlare) {
+        return check(nv21, width, height, sensorRect.left, sensorRect.top, sensorRect.right, sensorRect.bottom, checkBlur, checkGlare);
+    }
+
+    int check(byte[] nv21, int width, int height, int left, int top, int right, int bottom, boolean checkBlur, boolean checkGlare) {
+        if (!checkBlur && !checkGlare) return OK;
+        if (!measure(nv21, width, height, left, top, right, bottom)) return OK;
+        if (checkGlare && glare > MAX_GLARE) return GLARE;
+        if (checkBlur && sharpness < MIN_SHARPNESS) return BLURRED;
+        return OK;
+    }
+
+    /**
+     * @return false if the area could not be measured
+     */
+    boolean measure(byte[] nv21, int width, int height, int left, int top, int right, int bottom) {
+        sharpness = -1;
+        glare = 0;
+        left = Math.max(1, left);
+        top = Math.max(1, top);
+        right = Math.min(width - 1, right);
+        bottom = Math.min(height - 1, bottom);
+        if (nv21 == null || nv21.length < width * height || right - left < 3 || bottom - top < 3) return false;
+
+        int step = Math.max(1, Math.max(right - left, bottom - top) / MAX_SAMPLES);
+        long sum = 0, sumSquares = 0;
+        int count = 0, glared = 0;
+        for (int y = top; y < bottom; y += step) {
+            int row = y * width;
+            for (int x = left; x < right; x += step) {
+                int i = row + x;
+                int center = nv21[i] & 0xff;
+                int laplacian = 4 * center - (nv21[i - 1] & 0xff) - (nv21[i + 1] & 0xff)
+                        - (nv21[i - width] & 0xff) - (nv21[i + width] & 0xff);
+                sum += laplacian;
+                sumSquares += laplacian * laplacian;
+                if (center >= GLARE_LEVEL) glared++;
+                count++;
+            }
+        }
+        float mean = (float) sum / count;
+        sharpness = (float) sumSquares / count - mean * mean;
+        glare = (float) glared / count;
+        return true;
+    }
+}
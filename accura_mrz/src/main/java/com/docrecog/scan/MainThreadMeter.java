@@ -0,0 +1,73 @@
+package com.docrecog.scan;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time the scan spends on the main thread, the work which can make the camera preview and the UI
+ * jank. Preview callbacks are measured with {@link #add(long)} and runnables posted to the main
+ * thread are wrapped by {@link #wrap(Runnable)}. {@link #finish()} ends the current scan.
+ */
+final class MainThreadMeter {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong longest = new AtomicLong();
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile long lastScanMillis = 0;
+    private volatile long lastLongestMillis = 0;
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when the main thread work started
+     */
+    void add(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        nanos.addAndGet(elapsed);
+        count.incrementAndGet();
+        long max;
+        while (elapsed > (max = longest.get()) && !longest.compareAndSet(max, elapsed)) {
+            // another thread updated it, try again
+        }
+    }
+
+    Runnable wrap(final Runnable runnable) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    runnable.run();
+                } finally {
+                    add(start);
+                }
+            }
+        };
+    }
+
+    /**
+     * End of a scan, the counters start again for the next one.
+     *
+     * @return summary of the finished scan for the log
+     */
+    String finish() {
+        long total = nanos.getAndSet(0);
+        long max = longest.getAndSet(0);
+        int calls = count.getAndSet(0);
+        lastScanMillis = total / 1000000;
+        lastLongestMillis = max / 1000000;
+        return "main thread " + lastScanMillis + "ms in " + calls + " calls, longest " + lastLongestMillis + "ms";
+    }
+
+    /**
+     * @return main thread time of the last finished scan in milliseconds
+     */
+    long getLastScanMillis() {
+        return lastScanMillis;
+    }
+
+    /**
+     * @return longest single main thread call of the last finished scan in milliseconds
+     */
+    long getLastLongestMillis() {
+        return lastLongestMillis;
+    }
+}
@@ -0,0 +1,268 @@
+package com.docrecog.scan;
+
+import android.graphics.Rect;
+
+/**
+ * Cheap test on the luma (Y) plane of a NV21 frame whether the scan area shows MRZ text at all,
+ * used to skip the native recognition while the document is still being placed.
+ *
+ * <p>The lower part of the scan area is sampled row by row. A row is a text row when it has many
+ * strong luma edges (character strokes) spread over almost the whole width, as the OCR-B lines of a
+ * MRZ are. Runs of text rows as high as a MRZ line are counted as lines, a band needs at least
+ * {@link #MIN_LINES} of them. Only the pixels of every few rows and columns are read and nothing is
+ * allocated per frame.
+ *
+ * <p>The detector must not block a valid scan, so after {@link #MAX_SKIPPED_FRAMES} frames without a
+ * band in a row the next frame is recognized anyway.
+ *
+ * <p>The lines found also locate the MRZ in the scan area ({@link #getMrzRect(Rect)}), and through the
+ * size of the document pages the area of the document above it where the photo is
+ * ({@link #getFaceRect(Rect)}), so the native code gets a tight crop instead of the whole scan area.
+ */
+final class MrzBandDetector {
+
+    static final int MIN_LINES = 2;
+    static final int MAX_SKIPPED_FRAMES = 5;
+
+    // sampled rows and columns of the scan area
+    private static final int MAX_SAMPLED_ROWS = 160;
+    private static final int MAX_SAMPLED_COLUMNS = 240;
+    // the MRZ is in the lower part of the document
+    private static final float SEARCH_TOP = 0.4f;
+    // luma difference of a stroke edge
+    private static final int EDGE_THRESHOLD = 24;
+    // a text row has edges in most of the bins across the width
+    private static final int BINS = 8;
+    private static final int MIN_BINS = 6;
+    private static final int MIN_EDGES_PER_BIN = 2;
+    // highest MRZ line in percent of the scan area height
+    private static final float MAX_LINE_HEIGHT = 0.12f;
+    // TD1 has three lines, all other layouts two
+    private static final int MAX_LINES = 3;
+    private static final int MAX_RUNS = 16;
+    // height of the document page for its width, TD2, TD3 and visa pages are all near 0.7, TD1 is 0.63
+    private static final float PAGE_RATIO = 0.71f;
+    // margin around the MRZ lines in percent of the band width
+    private static final float MARGIN = 0.03f;
+    private static final int MIN_REGION_SIZE = 32;
+
+    private final int[] binEdges = new int[BINS];
+    private final int[] runStarts = new int[MAX_RUNS];
+    private final int[] runEnds = new int[MAX_RUNS];
+    private boolean[] textRows = new boolean[0];
+    private int[] firstEdges = new int[0];
+    private int[] lastEdges = new int[0];
+    private int lineCount = 0;
+    private int skipped = 0;
+    // MRZ lines of the last frame in scan area coordinates and the size of the area
+    private int bandLeft, bandTop, bandRight, bandBottom;
+    private int areaWidth, areaHeight;
+
+    void reset() {
+        skipped = 0;
+        lineCount = 0;
+    }
+
+    /**
+     * @return number of MRZ like lines found by the last {@link #detect} call
+     */
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Whether the frame is worth a native MRZ read: it has a band, or too many frames were skipped.
+     *
+     * @see #detect(byte[], int, int, int, Rect)
+     */
+    boolean shouldRecognize(byte[] nv21, int width, int height, int rotationDegree, Rect cropRect) {
+        if (detect(nv21, width, height, rotationDegree, cropRect) || skipped >= MAX_SKIPPED_FRAMES) {
+            skipped = 0;
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    /**
+     * @param nv21           NV21 preview frame
+     * @param width          preview width
+     * @param height         preview height
+     * @param rotationDegree clockwise rotation of the preview, 0, 90, 180 or 270
+     * @param cropRect       scan area in rotated image coordinates
+     * @return true if the scan area may contain a MRZ, also when it could not be checked
+     */
+    boolean detect(byte[] nv21, int width, int height, int rotationDegree, Rect cropRect) {
+        return detect(nv21, width, height, rotationDegree, cropRect.left, cropRect.top, cropRect.right, cropRect.bottom);
+    }
+
+    /**
+     * MRZ lines found by the last {@link #detect} call with a small margin.
+     *
+     * @param out rect to be set, in coordinates of the scan area
+     * @return {@code out}, or null if no band was found
+     */
+    Rect getMrzRect(Rect out) {
+        if (lineCount < MIN_LINES) return null;
+        int lineHeight = (bandBottom - bandTop) / lineCount;
+        int margin = (int) ((bandRight - bandLeft) * MARGIN);
+        return clamp(out, bandLeft - margin, bandTop - lineHeight, bandRight + margin, bandBottom + lineHeight);
+    }
+
+    /**
+     * Area of the document above the MRZ found by the last {@link #detect} call, where passports and
+     * visas have the photo. The page height is taken from the width of the MRZ lines.
+     *
+     * @param out rect to be set, in coordinates of the scan area
+     * @return {@code out}, or null if no band was found
+     */
+    Rect getFaceRect(Rect out) {
+        if (lineCount < MIN_LINES) return null;
+        int bandWidth = bandRight - bandLeft;
+        int margin = (int) (bandWidth * MARGIN);
+        int pageTop = bandBottom - (int) (bandWidth * PAGE_RATIO) - 2 * margin;
+        return clamp(out, bandLeft - 2 * margin, pageTop, bandRight + 2 * margin, bandTop);
+    }
+
+    private Rect clamp(Rect out, int left, int top, int right, int bottom) {
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        right = Math.min(areaWidth, right);
+        bottom = Math.min(areaHeight, bottom);
+        if (right - left < MIN_REGION_SIZE || bottom - top < MIN_REGION_SIZE) return null;
+        out.set(left, top, right, bottom);
+        return out;
+    }
+
+    boolean detect(byte[] nv21, int width, int height, int rotationDegree, int left, int top, int right, int bottom) {
+        lineCount = 0;
+        boolean rotated = rotationDegree == 90 || rotationDegree == 270;
+        int rotatedWidth = rotated ? height : width;
+        int rotatedHeight = rotated ? width : height;
+        if (nv21 == null || nv21.length < width * height || left < 0 || top < 0
+                || right > rotatedWidth || bottom > rotatedHeight || right - left < BINS || bottom <= top) {
+            return true;
+        }
+
+        // index of rotated (x, y) is base + x * dx + y * dy
+        int base, dx, dy;
+        switch (rotationDegree) {
+            case 90:
+                base = (height - 1) * width;
+                dx = -width;
+                dy = 1;
+                break;
+            case 180:
+                base = height * width - 1;
+                dx = -1;
+                dy = -width;
+                break;
+            case 270:
+                base = width - 1;
+                dx = width;
+                dy = -1;
+                break;
+            default:
+                base = 0;
+                dx = 1;
+                dy = width;
+                break;
+        }
+
+        int areaHeight = bottom - top;
+        int rowStep = Math.max(1, areaHeight / MAX_SAMPLED_ROWS);
+        int columnStep = Math.max(1, (right - left) / MAX_SAMPLED_COLUMNS);
+        int columns = (right - left - 1) / columnStep;
+        int searchTop = top + (int) (areaHeight * SEARCH_TOP);
+        int rows = (bottom - searchTop + rowStep - 1) / rowStep;
+        if (textRows.length < rows) {
+            textRows = new boolean[rows];
+            firstEdges = new int[rows];
+            lastEdges = new int[rows];
+        }
+
+        for (int row = 0; row < rows; row++) {
+            int y = searchTop + row * rowStep;
+            int index = base + left * dx + y * dy;
+            int step = columnStep * dx;
+            for (int bin = 0; bin < BINS; bin++) binEdges[bin] = 0;
+            int first = -1, last = -1;
+            int previous = nv21[index] & 0xff;
+            for (int column = 1; column <= columns; column++) {
+                index += step;
+                int luma = nv21[index] & 0xff;
+                int diff = luma - previous;
+                if (diff > EDGE_THRESHOLD || diff < -EDGE_THRESHOLD) {
+                    binEdges[column * BINS / (columns + 1)]++;
+                    if (first < 0) first = column;
+                    last = column;
+                }
+                previous = luma;
+            }
+            firstEdges[row] = first;
+            lastEdges[row] = last;
+            int bins = 0;
+            for (int bin = 0; bin < BINS; bin++) {
+                if (binEdges[bin] >= MIN_EDGES_PER_BIN) bins++;
+            }
+            textRows[row] = bins >= MIN_BINS;
+        }
+
+        // runs of text rows, a single row without text inside a line is tolerated
+        int maxRun = Math.max(2, (int) (areaHeight * MAX_LINE_HEIGHT / rowStep));
+        int runs = 0;
+        int run = 0, gap = 0;
+        for (int row = 0; row <= rows; row++) {
+            if (row < rows && textRows[row]) {
+                run += gap + 1;
+                gap = 0;
+            } else if (row < rows && run > 0 && gap == 0) {
+                gap = 1;
+            } else {
+                if (run >= 2 && run <= maxRun) {
+                    // keep the lowest runs, the MRZ is at the bottom
+                    if (runs == MAX_RUNS) {
+                        System.arraycopy(runStarts, 1, runStarts, 0, MAX_RUNS - 1);
+                        System.arraycopy(runEnds, 1, runEnds, 0, MAX_RUNS - 1);
+                        runs--;
+                    }
+                    runStarts[runs] = row - gap - run;
+                    runEnds[runs] = row - gap;
+                    runs++;
+                }
+                run = 0;
+                gap = 0;
+            }
+        }
+
+        // the MRZ lines are the lowest runs which follow each other closely
+        if (runs < MIN_LINES) return false;
+        int first = runs - 1;
+        int lineHeight = runEnds[first] - runStarts[first];
+        while (first > 0 && runs - first < MAX_LINES) {
+            int previousHeight = runEnds[first - 1] - runStarts[first - 1];
+            if (runStarts[first] - runEnds[first - 1] > 2 * Math.max(lineHeight, previousHeight)) break;
+            lineHeight = Math.max(lineHeight, previousHeight);
+            first--;
+        }
+        lineCount = runs - first;
+        if (lineCount < MIN_LINES) {
+            lineCount = 0;
+            return false;
+        }
+
+        int minColumn = columns, maxColumn = 0;
+        for (int row = runStarts[first]; row < runEnds[runs - 1]; row++) {
+            if (!textRows[row]) continue;
+            minColumn = Math.min(minColumn, firstEdges[row]);
+            maxColumn = Math.max(maxColumn, lastEdges[row]);
+        }
+        this.areaWidth = right - left;
+        this.areaHeight = areaHeight;
+        bandLeft = (minColumn - 1) * columnStep;
+        bandRight = Math.min(areaWidth, (maxColumn + 1) * columnStep);
+        bandTop = searchTop - top + runStarts[first] * rowStep;
+        bandBottom = Math.min(areaHeight, searchTop - top + runEnds[runs - 1] * rowStep);
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.docrecog.scan;
+
+import com.accurascan.ocr.mrz.util.MrzValidator;
+
+import java.util.Arrays;
+
+/**
+ * Votes over the MRZ lines read from successive frames.
+ *
+ * <p>Every read adds a weighted vote for its character at each position. A read counts more when
+ * more of its check digits are correct and when it agrees with the reads seen before, so a single
+ * glared or misread frame can not outvote the others. {@link #getResult()} gives the voted lines
+ * once every position has a clear majority and all check digits of the voted lines are correct.
+ * The voted lines are only normalized, never repaired by a check digit: identical misreads would
+ * just repeat the same guess.
+ *
+ * <p>Reads of another layout (number or length of lines) than the current one start a new vote.
+ */
+final class MrzConsensus {
+
+    /** Minimum number of reads before a vote is trusted. */
+    static final int MIN_READS = 2;
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ<";
+    private static final int SYMBOLS = ALPHABET.length();
+    private static final int FILLER = SYMBOLS - 1;
+
+    private MrzValidator.Layout layout = null;
+    private float[] scores = new float[0];
+    private int[] counts = new int[0];
+    private char[] read = new char[0];
+    private char[] voted = new char[0];
+    private int readCount = 0;
+
+    void reset() {
+        layout = null;
+        readCount = 0;
+    }
+
+    int getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * Add the lines of one read.
+     *
+     * @param lines        MRZ lines separated by new lines
+     * @param documentType scanned document type
+     * @return false if the lines are not a MRZ of the document type and were ignored
+     */
+    boolean add(String lines, MRZDocumentType documentType) {
+        MrzValidator.Layout layout = MrzValidator.getLayout(lines, documentType);
+        if (layout == null) return false;
+        if (layout != this.layout) {
+            start(layout);
+        }
+        copyRows(lines, read);
+
+        float weight = 1 + MrzValidator.countValidChecks(read, layout);
+        if (readCount > 0) {
+            // reads which disagree with the others count less
+            vote();
+            int same = 0;
+            for (int i = 0; i < read.length; i++) {
+                if (read[i] == voted[i]) same++;
+            }
+            weight *= 0.5f + 0.5f * same / read.length;
+        }
+        for (int i = 0; i < read.length; i++) {
+            int k = i * SYMBOLS + indexOf(read[i]);
+            scores[k] += weight;
+            counts[k]++;
+        }
+        readCount++;
+        return true;
+    }
+
+    /**
+     * The voted lines are only given out once all their check digits are correct as voted, a vote
+     * which is not stable or not valid is never used as a guess.
+     *
+     * @return normalized voted lines if the vote is stable and all check digits are correct,
+     * otherwise null
+     */
+    String getResult() {
+        if (readCount < MIN_READS) return null;
+        if (!vote()) return null;
+        MrzValidator.normalize(voted, layout);
+        if (MrzValidator.countValidChecks(voted, layout) != MrzValidator.getCheckCount(layout)) return null;
+        return MrzValidator.toLines(voted, layout);
+    }
+
+    private void start(MrzValidator.Layout layout) {
+        this.layout = layout;
+        int length = layout.lines * layout.length;
+        if (read.length != length) {
+            read = new char[length];
+            voted = new char[length];
+        }
+        if (scores.length < length * SYMBOLS) {
+            scores = new float[length * SYMBOLS];
+            counts = new int[length * SYMBOLS];
+        } else {
+            Arrays.fill(scores, 0, length * SYMBOLS, 0);
+            Arrays.fill(counts, 0, length * SYMBOLS, 0);
+        }
+        readCount = 0;
+    }
+
+    /**
+     * Fill {@link #voted} with the best character of each position.
+     *
+     * @return true if at every position the best character has more than half of the votes and
+     * was read at least {@link #MIN_READS} times
+     */
+    private boolean vote() {
+        boolean stable = true;
+        for (int i = 0; i < voted.length; i++) {
+            int best = 0;
+            float total = 0;
+            for (int s = 0, k = i * SYMBOLS; s < SYMBOLS; s++, k++) {
+                total += scores[k];
+                if (scores[k] > scores[i * SYMBOLS + best]) best = s;
+            }
+            voted[i] = ALPHABET.charAt(best);
+            int k = i * SYMBOLS + best;
+            if (scores[k] * 2 <= total || counts[k] < MIN_READS) stable = false;
+        }
+        return stable;
+    }
+
+    private static int indexOf(char c) {
+        int index = ALPHABET.indexOf(c);
+        return index < 0 ? FILLER : index;
+    }
+
+    private static void copyRows(String lines, char[] chars) {
+        int k = 0;
+        for (int i = 0; i < lines.length() && k < chars.length; i++) {
+            char c = lines.charAt(i);
+            if (c != '\n' && c != '\r') chars[k++] = c;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.docrecog.scan;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the face detection of a frame on its own worker while the recognition thread reads the MRZ
+ * of the same frame, and joins both results.
+ *
+ * <p>States of one frame:
+ * <pre>
+ * IDLE --start()--> RUNNING --face done--> FACE_READ --join()--> JOINED
+ *                           --join()-----> MRZ_READ  --face done--> JOINED
+ * </pre>
+ * {@link #join()} returns once the frame is JOINED and puts the machine back to IDLE. The face is
+ * handed out whether the MRZ was read or not: a face of a frame without MRZ is not a scan result,
+ * but may still be kept as a candidate by {@link BestFrameRing}.
+ * The bitmap given to {@link #start} must stay untouched until {@link #join()} returned.
+ */
+final class MrzFaceJoin {
+
+    enum State {
+        IDLE, RUNNING, MRZ_READ, FACE_READ, JOINED
+    }
+
+    private final ThreadPoolExecutor executor;
+    private State state = State.IDLE;
+    private RecogEngine.FaceResult face = null;
+
+    MrzFaceJoin() {
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AccuraFaceThread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Start the face detection of a frame.
+     *
+     * @param engine engine of the scan
+     * @param bitmap document or photo region of the frame
+     */
+    synchronized void start(final RecogEngine engine, final Bitmap bitmap) {
+        if (state != State.IDLE) throw new IllegalStateException("Face detection already started: " + state);
+        state = State.RUNNING;
+        face = null;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                RecogEngine.FaceResult result;
+                try {
+                    result = engine.detectFace(bitmap);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    result = RecogEngine.FaceResult.NONE;
+                }
+                onFaceRead(result);
+            }
+        });
+    }
+
+    private synchronized void onFaceRead(RecogEngine.FaceResult result) {
+        face = result;
+        state = state == State.MRZ_READ ? State.JOINED : State.FACE_READ;
+        notifyAll();
+    }
+
+    /**
+     * Wait for the face detection of the frame started by {@link #start}.
+     *
+     * @return the face result, to be released by the caller, or null if no detection was started
+     */
+    synchronized RecogEngine.FaceResult join() {
+        if (state == State.IDLE) return null;
+        state = state == State.FACE_READ ? State.JOINED : State.MRZ_READ;
+        boolean interrupted = false;
+        while (state != State.JOINED) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // the frame data is reused after the join, the face worker has to be finished
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        RecogEngine.FaceResult result = face;
+        face = null;
+        state = State.IDLE;
+        return result;
+    }
+}
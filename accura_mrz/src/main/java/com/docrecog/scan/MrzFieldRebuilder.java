@@ -0,0 +1,183 @@
+package com.docrecog.scan;
+
+import com.accurascan.ocr.mrz.model.MrzFields;
+import com.accurascan.ocr.mrz.util.AccuraLog;
+import com.accurascan.ocr.mrz.util.MrzValidator;
+
+import java.util.Arrays;
+
+/**
+ * Brings the fields of a native read in line with MRZ lines repaired by {@link MrzValidator},
+ * {@link MrzLineAssembler} or {@link MrzConsensus}.
+ *
+ * <p>The native side cuts the fields out of the lines it read. For every field the ICAO 9303
+ * position and the way the native value was cut out of it (as is, without fillers, fillers as
+ * spaces, or as a computed check digit) is looked up on the read lines, and the same is then done
+ * on the repaired lines. A field which can not be traced back to its position is not guessed: the
+ * read is rejected as a whole if such a field is not empty.
+ */
+final class MrzFieldRebuilder {
+
+    private static final String TAG = MrzFieldRebuilder.class.getSimpleName();
+
+    // kinds of parts: the characters of the ranges, the names before or after "<<", a check digit
+    private static final int PLAIN = 0;
+    private static final int PRIMARY_NAME = 1;
+    private static final int SECONDARY_NAME = 2;
+    private static final int CHECK_DIGIT = 3;
+
+    // ways the native side writes the characters of a part
+    private static final int AS_IS = 0;
+    private static final int NO_TRAILING_FILLER = 1;
+    private static final int FILLER_AS_SPACE = 2;
+    private static final int NO_FILLER = 3;
+    private static final int CONVERSIONS = 4;
+
+    private MrzFieldRebuilder() {
+    }
+
+    /**
+     * Set the fields of a read from the repaired lines.
+     *
+     * @param fields       fields of the native read, changed only if all of them can be rebuilt
+     * @param agreed       repaired lines of the same layout as the read lines
+     * @param documentType scanned document type
+     * @return false if a field can not be rebuilt, the read must not be used then
+     */
+    static boolean rebuild(MrzFields fields, String agreed, MRZDocumentType documentType) {
+        String lines = fields.get(MrzFields.LINES);
+        MrzValidator.Layout layout = MrzValidator.getLayout(agreed, documentType);
+        if (layout == null || layout != MrzValidator.getLayout(lines, documentType)) return false;
+        char[] read = MrzValidator.toChars(lines, layout);
+        char[] repaired = MrzValidator.toChars(agreed, layout);
+        if (Arrays.equals(read, repaired)) return true;
+
+        int[][][] parts = getParts(layout);
+        String[] values = new String[MrzFields.FIELD_COUNT];
+        for (int field = MrzFields.LINES + 1; field < MrzFields.FIELD_COUNT; field++) {
+            if (fields.isEmpty(field)) continue;
+            values[field] = rebuild(fields.get(field), parts[field], read, repaired);
+            if (values[field] == null) {
+                AccuraLog.loge(TAG, "Field " + field + " not found in " + layout);
+                return false;
+            }
+        }
+        for (int field = MrzFields.LINES + 1; field < MrzFields.FIELD_COUNT; field++) {
+            if (values[field] != null && !values[field].equals(fields.get(field))) {
+                fields.set(field, values[field]);
+            }
+        }
+        // the separators of the native lines are kept
+        char[] chars = lines.toCharArray();
+        for (int i = 0, k = 0; i < chars.length && k < repaired.length; i++) {
+            if (chars[i] != '\n' && chars[i] != '\r') chars[i] = repaired[k++];
+        }
+        fields.set(MrzFields.LINES, new String(chars));
+        return true;
+    }
+
+    /**
+     * @return the value cut out of the repaired lines the same way as {@code value} was cut out of
+     * the read lines, null if no part of the read lines gives {@code value}
+     */
+    private static String rebuild(String value, int[][] parts, char[] read, char[] repaired) {
+        if (parts == null) return null;
+        for (int[] part : parts) {
+            String before = extract(part, read);
+            for (int conversion = 0; conversion < CONVERSIONS; conversion++) {
+                if (part[0] == CHECK_DIGIT && conversion != AS_IS) break;
+                if (convert(before, conversion).equals(value)) {
+                    return convert(extract(part, repaired), conversion);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String extract(int[] part, char[] mrz) {
+        StringBuilder builder = new StringBuilder();
+        for (int r = 1; r < part.length; r += 2) {
+            builder.append(mrz, part[r], part[r + 1] - part[r]);
+        }
+        if (part[0] == CHECK_DIGIT) {
+            return String.valueOf(MrzValidator.checkDigit(builder, 0, builder.length()));
+        }
+        if (part[0] == PLAIN) return builder.toString();
+        int split = builder.indexOf("<<");
+        if (part[0] == PRIMARY_NAME) return split < 0 ? builder.toString() : builder.substring(0, split);
+        return split < 0 ? "" : builder.substring(split + 2);
+    }
+
+    private static String convert(String chars, int conversion) {
+        switch (conversion) {
+            case NO_TRAILING_FILLER: {
+                int end = chars.length();
+                while (end > 0 && chars.charAt(end - 1) == '<') end--;
+                return chars.substring(0, end);
+            }
+            case FILLER_AS_SPACE:
+                return chars.replace('<', ' ').trim();
+            case NO_FILLER:
+                return chars.replace("<", "");
+            default:
+                return chars;
+        }
+    }
+
+    /**
+     * @return for every field the parts of the lines it may have been cut out of, null if unknown
+     */
+    private static int[][][] getParts(MrzValidator.Layout layout) {
+        int l = layout.length;
+        int[][][] parts = new int[MrzFields.FIELD_COUNT][][];
+        parts[MrzFields.DOC_TYPE] = new int[][]{{PLAIN, 0, 2}};
+        parts[MrzFields.COUNTRY] = new int[][]{{PLAIN, 2, 5}};
+        if (layout == MrzValidator.Layout.TD1) {
+            int l3 = 2 * l;
+            parts[MrzFields.SURNAME] = new int[][]{{PRIMARY_NAME, l3, l3 + l}};
+            parts[MrzFields.GIVEN_NAME] = new int[][]{{SECONDARY_NAME, l3, l3 + l}};
+            setChecked(parts, MrzFields.DOC_NUMBER, 5, 14);
+            parts[MrzFields.OTHER_ID] = new int[][]{{PLAIN, 15, 30}, {PLAIN, l + 18, l + 29}};
+            setChecked(parts, MrzFields.BIRTH, l, l + 6);
+            parts[MrzFields.SEX] = new int[][]{{PLAIN, l + 7, l + 8}};
+            setChecked(parts, MrzFields.EXPIRATION_DATE, l + 8, l + 14);
+            parts[MrzFields.NATIONALITY] = new int[][]{{PLAIN, l + 15, l + 18}};
+            parts[MrzFields.SECOND_ROW_CHECKSUM] = new int[][]{{PLAIN, l + 29, l + 30}};
+            parts[MrzFields.CORRECT_SECOND_ROW_CHECKSUM] =
+                    new int[][]{{CHECK_DIGIT, 5, 30, l, l + 7, l + 8, l + 15, l + 18, l + 29}};
+            return parts;
+        }
+
+        parts[MrzFields.SURNAME] = new int[][]{{PRIMARY_NAME, 5, l}};
+        parts[MrzFields.GIVEN_NAME] = new int[][]{{SECONDARY_NAME, 5, l}};
+        setChecked(parts, MrzFields.DOC_NUMBER, l, l + 9);
+        parts[MrzFields.NATIONALITY] = new int[][]{{PLAIN, l + 10, l + 13}};
+        setChecked(parts, MrzFields.BIRTH, l + 13, l + 19);
+        parts[MrzFields.SEX] = new int[][]{{PLAIN, l + 20, l + 21}};
+        setChecked(parts, MrzFields.EXPIRATION_DATE, l + 21, l + 27);
+        if (layout == MrzValidator.Layout.TD3) {
+            setChecked(parts, MrzFields.OTHER_ID, l + 28, l + 42);
+            parts[MrzFields.SECOND_ROW_CHECKSUM] = new int[][]{{PLAIN, l + 43, l + 44}};
+            parts[MrzFields.CORRECT_SECOND_ROW_CHECKSUM] =
+                    new int[][]{{CHECK_DIGIT, l, l + 10, l + 13, l + 20, l + 21, l + 43}};
+        } else if (layout == MrzValidator.Layout.TD2) {
+            parts[MrzFields.OTHER_ID] = new int[][]{{PLAIN, l + 28, l + 35}};
+            parts[MrzFields.SECOND_ROW_CHECKSUM] = new int[][]{{PLAIN, l + 35, l + 36}};
+            parts[MrzFields.CORRECT_SECOND_ROW_CHECKSUM] =
+                    new int[][]{{CHECK_DIGIT, l, l + 10, l + 13, l + 20, l + 21, l + 35}};
+        } else {
+            // MRV-A and MRV-B, optional data up to the end of the line
+            parts[MrzFields.OTHER_ID] = new int[][]{{PLAIN, l + 28, 2 * l}};
+        }
+        return parts;
+    }
+
+    /**
+     * A field followed by its check digit, the field after it is the computed check digit.
+     */
+    private static void setChecked(int[][][] parts, int field, int start, int end) {
+        parts[field] = new int[][]{{PLAIN, start, end}};
+        parts[field + 1] = new int[][]{{PLAIN, end, end + 1}};
+        parts[field + 2] = new int[][]{{CHECK_DIGIT, start, end}};
+    }
+}
@@ -0,0 +1,106 @@
+package com.docrecog.scan;
+
+import com.accurascan.ocr.mrz.util.MrzValidator;
+
+/**
+ * Builds a MRZ from lines read in different frames.
+ *
+ * <p>A frame often reads one line cleanly while another one is clipped or under glare. The best
+ * valid copy of each line is kept (see {@link MrzValidator#isLineValid}) and the lines are put
+ * together as soon as every line has been read valid once. Lines without a check digit of their own
+ * (e.g. the names) must have been read the same in {@link #MIN_UNCHECKED_READS} frames. The joined
+ * lines are returned only if the checks across lines, like the composite check digit, are correct.
+ *
+ * <p>Only TD1 has check digits in more than one line. In TD2, TD3 and the visas all check digits
+ * are in the second line, a line read valid on its own is a valid read already, so those layouts
+ * are not assembled (see {@link #isSupported}).
+ */
+final class MrzLineAssembler {
+
+    static final int MIN_UNCHECKED_READS = 2;
+
+    private MrzValidator.Layout layout = null;
+    private char[] lines = new char[0];
+    private int[] hits = new int[0];
+
+    void reset() {
+        layout = null;
+    }
+
+    /**
+     * Add the lines of one read.
+     *
+     * @param read         MRZ lines separated by new lines
+     * @param documentType scanned document type
+     * @return the joined lines once every line has been read valid and all check digits are
+     * correct, otherwise null
+     */
+    String add(String read, MRZDocumentType documentType) {
+        MrzValidator.Layout layout = MrzValidator.getLayout(read, documentType);
+        if (layout == null || !isSupported(layout)) return null;
+        if (layout != this.layout) {
+            start(layout);
+        }
+        char[] mrz = MrzValidator.toChars(read, layout);
+        if (!MrzValidator.correct(mrz, layout)) {
+            // guesses based on check digits are only kept if the whole read became valid
+            mrz = MrzValidator.toChars(read, layout);
+            MrzValidator.normalize(mrz, layout);
+        }
+
+        int length = layout.length;
+        for (int line = 0; line < layout.lines; line++) {
+            if (!MrzValidator.isLineValid(mrz, layout, line)) continue;
+            if (hits[line] > 0 && isSameLine(mrz, line)) {
+                hits[line]++;
+            } else if (hits[line] <= 1) {
+                System.arraycopy(mrz, line * length, lines, line * length, length);
+                hits[line] = 1;
+            } else {
+                // another valid copy, the kept one has to be confirmed again
+                hits[line]--;
+            }
+        }
+
+        for (int line = 0; line < layout.lines; line++) {
+            int required = MrzValidator.getCheckCount(layout, line) > 0 ? 1 : MIN_UNCHECKED_READS;
+            if (hits[line] < required) return null;
+        }
+        if (MrzValidator.countValidChecks(lines, layout) == MrzValidator.getCheckCount(layout)) {
+            return MrzValidator.toLines(lines, layout);
+        }
+        // lines of different documents or a check across lines failed, drop the weakest line
+        int weakest = 0;
+        for (int line = 1; line < layout.lines; line++) {
+            if (hits[line] < hits[weakest]) weakest = line;
+        }
+        hits[weakest] = 0;
+        return null;
+    }
+
+    /**
+     * @return true if check digits lie in more than one line of the layout, only TD1
+     */
+    static boolean isSupported(MrzValidator.Layout layout) {
+        int checkedLines = 0;
+        for (int line = 0; line < layout.lines; line++) {
+            if (MrzValidator.getCheckCount(layout, line) > 0) checkedLines++;
+        }
+        return checkedLines > 1;
+    }
+
+    private void start(MrzValidator.Layout layout) {
+        this.layout = layout;
+        int length = layout.lines * layout.length;
+        if (lines.length != length) lines = new char[length];
+        if (hits.length != layout.lines) hits = new int[layout.lines];
+        for (int line = 0; line < hits.length; line++) hits[line] = 0;
+    }
+
+    private boolean isSameLine(char[] mrz, int line) {
+        for (int i = line * layout.length, end = i + layout.length; i < end; i++) {
+            if (mrz[i] != lines[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package com.docrecog.scan;
+
+/**
+ * Reads {@code responseCode} and {@code responseMessage} of the flat JSON objects returned by the
+ * native quality checks, e.g. <code>{"responseCode":0,"responseMessage":"..."}</code>.
+ *
+ * <p>The String is scanned in place, no JSON tree is built. Messages are kept in a small table and
+ * the same String instance is returned when the native side sends the same message again, so a
+ * response seen before is decoded without allocation.
+ *
+ * <p>The code is read like {@code JSONObject.getInt} did before: a quoted number such as
+ * <code>"responseCode":"1"</code> is accepted and a fraction is cut off.
+ *
+ * <p>An instance keeps the result of the last {@link #parse(String)} and is not thread safe.
+ */
+final class NativeResponse {
+
+    private static final String KEY_CODE = "\"responseCode\"";
+    private static final String KEY_MESSAGE = "\"responseMessage\"";
+    private static final int MAX_MESSAGES = 32;
+
+    private final String[] messages = new String[MAX_MESSAGES];
+    private int messageCount = 0;
+    private int nextMessage = 0;
+
+    private int code = 0;
+    private String message = null;
+
+    /**
+     * @param json response of a native check
+     * @return true if the response has a {@code responseCode}
+     */
+    boolean parse(String json) {
+        code = 0;
+        message = null;
+        if (json == null || json.isEmpty()) return false;
+
+        int index = valueStart(json, KEY_CODE);
+        if (index < 0) return false;
+        int length = json.length();
+        boolean quoted = index < length && json.charAt(index) == '"';
+        if (quoted) index++;
+        boolean negative = false;
+        if (index < length && (json.charAt(index) == '-' || json.charAt(index) == '+')) {
+            negative = json.charAt(index) == '-';
+            index++;
+        }
+        int start = index;
+        int value = 0;
+        while (index < length) {
+            char c = json.charAt(index);
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+            index++;
+        }
+        if (index == start) return false;
+        if (index < length && json.charAt(index) == '.') {
+            index++;
+            while (index < length && json.charAt(index) >= '0' && json.charAt(index) <= '9') index++;
+        }
+        if (quoted && (index >= length || json.charAt(index) != '"')) return false;
+        code = negative ? -value : value;
+
+        index = valueStart(json, KEY_MESSAGE);
+        if (index >= 0 && index < length && json.charAt(index) == '"') {
+            message = readString(json, index + 1);
+        }
+        return true;
+    }
+
+    int getCode() {
+        return code;
+    }
+
+    /**
+     * @return message of the last response, empty if the response has none
+     */
+    String getMessage() {
+        return message == null ? "" : message;
+    }
+
+    /**
+     * @return index of the first character of the value of {@code key}, -1 if the key is missing
+     */
+    private static int valueStart(String json, String key) {
+        int index = json.indexOf(key);
+        if (index < 0) return -1;
+        index = skipWhitespace(json, index + key.length());
+        if (index >= json.length() || json.charAt(index) != ':') return -1;
+        return skipWhitespace(json, index + 1);
+    }
+
+    private static int skipWhitespace(String json, int index) {
+        while (index < json.length() && Character.isWhitespace(json.charAt(index))) index++;
+        return index;
+    }
+
+    private String readString(String json, int start) {
+        int end = start;
+        int length = json.length();
+        while (end < length) {
+            char c = json.charAt(end);
+            if (c == '"') break;
+            if (c == '\\') return unescape(json, start);
+            end++;
+        }
+        if (end >= length) return null;
+
+        int count = end - start;
+        for (int i = 0; i < messageCount; i++) {
+            String cached = messages[i];
+            if (cached.length() == count && json.regionMatches(start, cached, 0, count)) {
+                return cached;
+            }
+        }
+        return remember(json.substring(start, end));
+    }
+
+    private String unescape(String json, int start) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = start; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') return remember(builder.toString());
+            if (c == '\\' && i + 1 < json.length()) {
+                char next = json.charAt(++i);
+                switch (next) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'u':
+                        if (i + 4 < json.length()) {
+                            try {
+                                builder.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                            } catch (NumberFormatException e) {
+                                return null;
+                            }
+                            i += 4;
+                        }
+                        break;
+                    default:
+                        builder.append(next);
+                        break;
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        return null;
+    }
+
+    private String remember(String value) {
+        for (int i = 0; i < messageCount; i++) {
+            if (messages[i].equals(value)) return messages[i];
+        }
+        value = value.intern();
+        messages[nextMessage] = value;
+        nextMessage = (nextMessage + 1) % MAX_MESSAGES;
+        if (messageCount < MAX_MESSAGES) messageCount++;
+        return value;
+    }
+}
@@ -3,6 +3,8 @@ package com.docrecog.scan;
 import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
 import android.hardware.Camera;
 import android.media.CameraProfile;
 import android.os.Build;
@@ -23,19 +25,20 @@ import com.accurascan.ocr.mrz.camerautil.CameraHolder;
 import com.accurascan.ocr.mrz.camerautil.FocusManager;
 import com.accurascan.ocr.mrz.model.InitModel;
 import com.accurascan.ocr.mrz.model.RecogResult;
-import com.accurascan.ocr.mrz.motiondetection.ImageProcessing;
-import com.accurascan.ocr.mrz.motiondetection.RgbMotionDetection;
+import com.accurascan.ocr.mrz.motiondetection.LumaMotionDetection;
 import com.accurascan.ocr.mrz.motiondetection.data.GlobalData;
 import com.accurascan.ocr.mrz.util.AccuraLog;
+import com.accurascan.ocr.mrz.util.BitmapPool;
 import com.accurascan.ocr.mrz.util.BitmapUtil;
 import com.accurascan.ocr.mrz.util.Util;
 
+import org.opencv.core.Mat;
+
 import java.io.ByteArrayOutputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -46,7 +49,15 @@ import static com.accurascan.ocr.mrz.camerautil.FocusManager.isSupported;
 
 abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Camera.PreviewCallback, FocusManager.Listener {
 
-    private final RgbMotionDetection detection;
+    private final LumaMotionDetection detection;
+    private final MrzBandDetector mrzBand = new MrzBandDetector();
+    private final FrameQuality frameQuality = new FrameQuality();
+    private final BestFrameRing bestFrames = new BestFrameRing();
+    private final MrzFaceJoin faceJoin = new MrzFaceJoin();
+    private volatile boolean concurrentFaceDetection = false;
+    private final MainThreadMeter mainThread = new MainThreadMeter();
+    // finished scan waiting for the end of the frame on the recognition worker
+    private volatile RecogResult completedResult = null;
     private boolean isPreviewStarted = false;
     private InitModel i1 = null;
 
@@ -127,6 +138,9 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
 //    private boolean isSetPlayer = true;
 
     private RecogEngine recogEngine;
+    private final Object engineLock = new Object();
+    private boolean engineAcquired = false;
+    private volatile boolean engineReleased = false;
     private RecogResult g_recogResult;
     private int rectW, rectH;
     private DisplayMetrics dm;
@@ -183,7 +197,11 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
             }
             if (RecogType.MRZ == mReference.recogType) {
                 AccuraLog.loge(TAG, "InitializeM");
-                InitModel initModel = mReference.recogEngine.initCard(mReference.mActivity, mReference.recogType == RecogType.MRZ ? 0 : 1);
+                InitModel initModel = mReference.acquireEngine();
+                if (initModel == null && mReference.engineReleased) {
+                    // screen destroyed while starting
+                    return;
+                }
                 if (initModel != null && initModel.getResponseCode() == 1) {
                     mReference.onProcessUpdate(RecogEngine.SCAN_TITLE_MRZ_FRONT, null, false);
                     mReference.handler.sendEmptyMessage(1);
@@ -196,342 +214,580 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
         }
     }
 
-    private static volatile AtomicBoolean processing = new AtomicBoolean(false);
-
+    /**
+     * Long-lived recognition worker. Frames are posted to {@link FrameMailbox} from
+     * {@link #onPreviewFrame(byte[], Camera)} and processed one at a time, always the latest one.
+     */
     private static final class RecogThread extends Thread {
+        private final WeakReference<OcrCameraPreview> reference;
+        private final FrameMailbox mailbox;
+        // worker of the previous session which may still be finishing its last frame
+        private Thread previous;
+        // crop bitmap of the previous frame, refilled by the next frame if it has the same size
+        private Bitmap frameBitmap;
+        // MRZ and face regions of the previous frame, reused the same way
+        private Bitmap mrzBitmap;
+        private Bitmap faceBitmap;
+        // action which must wait until the worker no longer touches the engine, see runOnExit()
+        private final Object exitLock = new Object();
+        private boolean exited = false;
+        private Runnable onExit;
+
+        private RecogThread(OcrCameraPreview activity, FrameMailbox mailbox, Thread previous) {
+            super("AccuraRecogThread");
+            this.reference = new WeakReference<>(activity);
+            this.mailbox = mailbox;
+            this.previous = previous;
+        }
+
+        /**
+         * Run {@code action} once this worker has left its loop, at once if it already has.
+         * Used to free the frame Mats and the engine only when no native call can still use them.
+         */
+        void runOnExit(final Runnable action) {
+            synchronized (exitLock) {
+                if (!exited) {
+                    final Runnable pending = onExit;
+                    onExit = pending == null ? action : new Runnable() {
+                        @Override
+                        public void run() {
+                            pending.run();
+                            action.run();
+                        }
+                    };
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        @Override
+        public void run() {
+            try {
+                recognize();
+            } finally {
+                Runnable action;
+                synchronized (exitLock) {
+                    exited = true;
+                    action = onExit;
+                    onExit = null;
+                }
+                if (action != null) action.run();
+            }
+        }
+
+        private void recognize() {
+            if (previous != null) {
+                try {
+                    previous.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                previous = null;
+            }
+            OcrCameraPreview activity = reference.get();
+            if (activity != null) {
+                // new session, the next frame becomes the motion background
+                activity.detection.reset();
+                activity.mrzBand.reset();
+                activity.bestFrames.clear();
+            }
+            activity = null;
+
+            FrameMailbox.Frame frame;
+            while ((frame = mailbox.take()) != null) {
+                OcrCameraPreview mReference = reference.get();
+                if (mReference == null) {
+                    AccuraLog.loge(TAG, "ReleaseR");
+                    break;
+                }
+                if (!mReference.mRecogArmed) {
+                    // recognition is stopped or the previous frame has not re-armed it yet
+                    mailbox.onSkipped();
+                    mReference.previewBuffers.recycle(frame.camera, frame.data);
+                    continue;
+                }
+                mReference.mRecogArmed = false;
+                AccuraLog.loge(TAG, "Pro. Frame");
+                RecogTask task = new RecogTask(mReference, frame.data, frame.camera, frameBitmap, mrzBitmap, faceBitmap);
+                task.run();
+                // a stage which still holds the frame image keeps the bitmap, the next frame gets a new one
+                frameBitmap = task.docImage == null || task.docImage.isReleased() ? task.bmCard : null;
+                mrzBitmap = task.bmMrz;
+                faceBitmap = task.bmFace;
+                mailbox.onProcessed();
+                // frame data is not used after the task, hand the buffer back to the camera
+                mReference.previewBuffers.recycle(frame.camera, frame.data);
+                RecogResult completed = mReference.completedResult;
+                if (completed != null) {
+                    // the frame which completed the scan is finished, the result can be delivered
+                    mReference.completedResult = null;
+                    mReference.postResult(completed);
+                }
+            }
+            AccuraLog.loge(TAG, "Recog stopped " + mailbox);
+        }
+    }
+
+    /**
+     * Recognition of a single preview frame, executed on {@link RecogThread}.
+     * {@link #bmCard} is owned by the worker and reused for the next frame, so it is copied
+     * when kept in the result and never recycled here. The same applies to {@link #bmMrz} and
+     * {@link #bmFace}, the MRZ and photo regions located by {@link MrzBandDetector}.
+     */
+    private static final class RecogTask implements Runnable {
         private final WeakReference<OcrCameraPreview> reference;
         private byte[] data;
         private Camera camera;
         private Bitmap bmCard;
+        private Bitmap bmMrz;
+        private Bitmap bmFace;
+        // shared view of bmCard for the stages of this frame
+        private FrameImage docImage;
+        // FrameQuality scores of this frame, sharpness is negative if not measured
+        private float sharpness = -1;
+        private float glare = 0;
         private int ret;
         private long end;
+        // the face worker reads docImage, which was retained for it
+        private boolean faceRunning = false;
 
-        public RecogThread(OcrCameraPreview activity, byte[] bytes, Camera camera) {
+        private RecogTask(OcrCameraPreview activity, byte[] bytes, Camera camera, Bitmap reuse, Bitmap reuseMrz, Bitmap reuseFace) {
             reference = new WeakReference<>(activity);
             this.data = bytes;
             this.camera = camera;
+            this.bmCard = reuse;
+            this.bmMrz = reuseMrz;
+            this.bmFace = reuseFace;
         }
 
         @Override
         public void run() {
-            if (!processing.compareAndSet(false, true)) return;
-
             try {
                 OcrCameraPreview mReference = reference.get();
                 if (mReference != null) {
-                    if (bmCard != null && !bmCard.isRecycled()) bmCard.recycle();
                     final Camera.Size size = camera.getParameters().getPreviewSize();
                     final int format = camera.getParameters().getPreviewFormat();
 
-                    int[] ints = ImageProcessing.decodeYUV420SPtoRGB(data, size.width, size.height);
-                    if (!mReference.detection.detect(ints, size.width, size.height, RecogEngine.mT, RecogEngine.v)/*mReference.recogEngine.doCheckFrame(data, size.width, size.height) > 0*/) {
+                    if (!mReference.detection.detect(data, size.width, size.height, RecogEngine.mT, RecogEngine.v)/*mReference.recogEngine.doCheckFrame(data, size.width, size.height) > 0*/) {
 //                        if (mReference.newMessage.contains(RecogEngine.ACCURA_ERROR_CODE_MOTION))
 //                            mReference.onProcessUpdate(-1, "", false);
 //                        bmCard = BitmapUtil.getBitmapFromData(data, size, format, mReference.rotation, mReference.rectH, mReference.rectW, mReference.recogType);
-                        bmCard = BitmapUtil.getBitmapFromData(data, size, format, mReference.rotation, mReference.rectH, mReference.rectW, /*mReference.recogType,*/ mReference.cameraSourcePreview.childXOffset, mReference.cameraSourcePreview.childYOffset, mReference.cameraSourcePreview.childWidth, mReference.cameraSourcePreview.childHeight);
-
                         mReference._mutex.lock();
-
-                        if (bmCard != null && mReference.recogEngine.checkLight(bmCard)) {
-                            mReference.refreshPreview();
-                            bmCard.recycle();
-                            mReference._mutex.unlock(); // to restart thread
-                            return;
+                        try {
+                            recognize(mReference, size, format);
+                        } finally {
+                            // also reached by an exception, the frame must not keep the lock, the
+                            // face worker or the frame image
+                            RecogEngine.FaceResult pending = mReference.faceJoin.join();
+                            if (pending != null) pending.release();
+                            if (faceRunning) {
+                                faceRunning = false;
+                                docImage.release();
+                            }
+                            if (docImage != null) {
+                                docImage.release();
+                            }
+                            mReference.recogEngine.endFrame();
+                            mReference._mutex.unlock();
                         }
-                        if (bmCard != null && !bmCard.isRecycled()) {
-                            if (mReference.recogEngine.checkValid(bmCard)) {
-                                if (mReference.recogType == RecogType.MRZ) {
-                                    Bitmap docBmp = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                    if (mReference.mrzDocumentType == MRZDocumentType.PASSPORT_MRZ || mReference.mrzDocumentType == MRZDocumentType.VISA_MRZ) {
-                                        mReference.g_recogResult.recType = RecogEngine.RecType.INIT;
-                                        long start = System.currentTimeMillis();
-                                        Runnable runnable = new Runnable() {
-                                            @Override
-                                            public void run() {
-                                                if (end < start) {
-                                                    // Concat _clear with message to remove message after few seconds.
-                                                    AccuraLog.loge(TAG, "Clear");
-                                                    mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_PROCESSING.concat("_clear")/*"Processing..."*/);
-                                                }
-                                            }
-                                        };
-                                        Runnable runnable1 = () -> new Handler().postDelayed(runnable, 1800);
-                                        mReference.mActivity.runOnUiThread(runnable1);
-                                        ret = mReference.recogEngine.doRunData(bmCard, 0, mReference.g_recogResult, mReference.mrzDocumentType);
-                                        end = System.currentTimeMillis();
-                                        if (ret == 1) {
-                                            mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_PROCESSING/*"Processing..."*/);
-                                            Util.logd("ocr_log", "detectFace: Call");
-                                            mReference.recogEngine.doFaceDetect(mReference.mRecCnt, docBmp, mReference.g_recogResult, new RecogEngine.ScanListener() {
-
-                                                @Override
-                                                void onScannedSuccess(boolean isDone, boolean isMRZRequired) {
-                                                    if (mReference.mrzDocumentType == MRZDocumentType.VISA_MRZ) {
-                                                        if (!isDone && mReference.bRet > -1) {
-                                                            mReference.bRet++;
-                                                        }
-                                                        if (mReference.recogType == RecogType.MRZ) {
-                                                            if ((mReference.bRet > mReference.frameCount || mReference.bRet == -1) && mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
-                                                                Util.logd(TAG, "INIT");
-                                                                AccuraLog.loge(TAG, "onVDone");
-                                                                mReference.g_recogResult.docFrontBitmap = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                                                mReference.sendInformation();
-                                                            } else {
-                                                                mReference.onScannedSuccess(isDone, isMRZRequired);
-                                                            }
-                                                            bmCard.recycle();
-                                                            docBmp.recycle();
-                                                        }
-                                                    } else {
-                                                        mReference.onScannedSuccess(isDone, isMRZRequired);
-                                                        bmCard.recycle();
-                                                        docBmp.recycle();
-                                                    }
+                    } else {
+                        if (mReference.fCount % 4 == 0) {
+                            mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MOTION);
+                        }
+                        mReference.fCount++;
+                        mReference.refreshPreview();
+                    }
+                } else {
+                    AccuraLog.loge(TAG, "ReleaseR");
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                AccuraLog.loge(TAG, "Thread - " + Log.getStackTraceString(e));
+            }
+        }
 
-                                                }
+        /**
+         * Recognition of the frame, called with the recognition lock held. The caller ends the frame.
+         */
+        private void recognize(final OcrCameraPreview mReference, Camera.Size size, int format) {
+            // light and document checks run on a Mat built from the NV21 frame, the
+            // bitmap is only created once the frame is going to be recognized
+            Mat frameMat = null;
+            Rect cropRect = null;
+            if (format == ImageFormat.NV21) {
+                cropRect = BitmapUtil.getPreviewCropRect(size, mReference.rotation, mReference.rectH, mReference.rectW, mReference.cameraSourcePreview.childXOffset, mReference.cameraSourcePreview.childYOffset, mReference.cameraSourcePreview.childWidth, mReference.cameraSourcePreview.childHeight);
+                // clearly blurred or glared frames are dropped on the Y plane, before any conversion
+                if (!mReference.recogEngine.checkQuality(mReference.frameQuality, data, size.width, size.height, BitmapUtil.getRotationDegree(mReference.rotation), cropRect)) {
+                    mReference.refreshPreview();
+                    return;
+                }
+                sharpness = mReference.frameQuality.getSharpness();
+                glare = mReference.frameQuality.getGlare();
+                frameMat = mReference.recogEngine.beginFrame(data, size.width, size.height, BitmapUtil.getRotationDegree(mReference.rotation), cropRect);
+            } else {
+                mReference.recogEngine.beginFrame();
+                bmCard = BitmapUtil.getBitmapFromData(data, size, format, mReference.rotation, mReference.rectH, mReference.rectW, mReference.cameraSourcePreview.childXOffset, mReference.cameraSourcePreview.childYOffset, mReference.cameraSourcePreview.childWidth, mReference.cameraSourcePreview.childHeight, bmCard);
+                if (bmCard != null) frameMat = mReference.recogEngine.getFrameMat(bmCard);
+            }
 
-                                                @Override
-                                                void onFaceScanned(Bitmap bitmap) {
-                                                    Util.logd("ocr_log", "detectFace: Done " + (mReference.g_recogResult.faceBitmap != null));
-                                                    AccuraLog.loge(TAG, "mvpDone" + ((bitmap == null)?1:0));
-                                                    if (mReference.recogType == RecogType.MRZ) {
-                                                        if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
-                                                            mReference.g_recogResult.faceBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
-                                                            Util.logd(TAG, "INIT");
-                                                            AccuraLog.loge(TAG, "onDone");
-                                                            mReference.g_recogResult.docFrontBitmap = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                                            mReference.sendInformation();
-                                                        } else {
-                                                            mReference.g_recogResult.recType = RecogEngine.RecType.INIT;
-                                                            mReference.g_recogResult.faceBitmap = null;
-                                                            AccuraLog.loge(TAG, "onDone");
-                                                            mReference.refreshPreview();
-                                                        }
-                                                        bmCard.recycle();
-                                                        docBmp.recycle();
-                                                    }
+            if (frameMat != null && mReference.recogEngine.checkLight(frameMat)) {
+                mReference.refreshPreview();
+                return;
+            }
+            if (frameMat != null) {
+                if (mReference.recogEngine.checkValid(frameMat)) {
+                    if (format == ImageFormat.NV21) {
+                        bmCard = mReference.recogEngine.getFrameBitmap(frameMat, bmCard);
+                    }
+                    // no MRZ like text in the scan area, the native read is skipped and counts as MRZ not found
+                    boolean hasBand = cropRect == null || mReference.mrzBand.shouldRecognize(data, size.width, size.height, BitmapUtil.getRotationDegree(mReference.rotation), cropRect);
+                    // native code gets only the located MRZ lines and the page above them, else the whole scan area
+                    Bitmap mrzBmp = bmCard;
+                    Bitmap faceBmp = null;
+                    if (cropRect != null && hasBand) {
+                        Rect region = mReference.mrzBand.getMrzRect(new Rect());
+                        if (region != null) {
+                            bmMrz = mReference.recogEngine.getFrameBitmap(frameMat, region, bmMrz);
+                            mrzBmp = bmMrz;
+                        }
+                        region = mReference.mrzBand.getFaceRect(new Rect());
+                        if (region != null) {
+                            bmFace = mReference.recogEngine.getFrameBitmap(frameMat, region, bmFace);
+                            faceBmp = bmFace;
+                        }
+                    }
+                    if (mReference.recogType == RecogType.MRZ) {
+                        // the stages read bmCard through docImage, pixels are copied only into the result
+                        docImage = new FrameImage(bmCard);
+                        Bitmap docBmp = docImage.get();
+                        if (mReference.mrzDocumentType == MRZDocumentType.PASSPORT_MRZ || mReference.mrzDocumentType == MRZDocumentType.VISA_MRZ) {
+                            mReference.g_recogResult.recType = RecogEngine.RecType.INIT;
+                            long start = System.currentTimeMillis();
+                            Runnable runnable = new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (end < start) {
+                                        // Concat _clear with message to remove message after few seconds.
+                                        AccuraLog.loge(TAG, "Clear");
+                                        mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_PROCESSING.concat("_clear")/*"Processing..."*/);
+                                    }
+                                }
+                            };
+                            Runnable runnable1 = () -> new Handler().postDelayed(mReference.mainThread.wrap(runnable), 1800);
+                            mReference.mActivity.runOnUiThread(mReference.mainThread.wrap(runnable1));
+                            Bitmap faceSource = faceBmp != null ? faceBmp : docBmp;
+                            // the face is detected while the MRZ is read and only used if the MRZ was read
+                            boolean concurrent = hasBand && mReference.concurrentFaceDetection;
+                            if (concurrent) {
+                                mReference.faceJoin.start(mReference.recogEngine, faceSource);
+                                docImage.retain();
+                                faceRunning = true;
+                            }
+                            ret = hasBand ? mReference.recogEngine.doRunData(mrzBmp, 0, mReference.g_recogResult, mReference.mrzDocumentType) : -3;
+                            RecogEngine.FaceResult face = null;
+                            if (concurrent) {
+                                face = mReference.faceJoin.join();
+                            }
+                            if (ret != 1 && hasBand) {
+                                // not read, but the page may still give the sharpest images of the scan
+                                mReference.bestFrames.offer(docImage, sharpness, glare, face);
+                                face = null;
+                            }
+                            if (concurrent) {
+                                faceRunning = false;
+                                docImage.release();
+                            }
+                            end = System.currentTimeMillis();
+                            if (ret == 1) {
+                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_PROCESSING/*"Processing..."*/);
+                                Util.logd("ocr_log", "detectFace: Call");
+                                if (face == null) {
+                                    face = mReference.recogEngine.detectFace(faceSource);
+                                }
+                                final float faceConfidence = face.confidence;
+                                mReference.recogEngine.onFaceResult(face, mReference.g_recogResult, new RecogEngine.ScanListener() {
+
+                                    @Override
+                                    void onScannedSuccess(boolean isDone, boolean isMRZRequired) {
+                                        if (mReference.mrzDocumentType == MRZDocumentType.VISA_MRZ) {
+                                            if (!isDone && mReference.bRet > -1) {
+                                                mReference.bRet++;
+                                            }
+                                            if (mReference.recogType == RecogType.MRZ) {
+                                                if ((mReference.bRet > mReference.frameCount || mReference.bRet == -1) && mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
+                                                    Util.logd(TAG, "INIT");
+                                                    AccuraLog.loge(TAG, "onVDone");
+                                                    mReference.g_recogResult.docFrontBitmap = mReference.bestFrames.takeBest(docImage, sharpness, glare, null, 0).document;
+                                                    mReference.sendInformation();
+                                                } else {
+                                                    mReference.onScannedSuccess(isDone, isMRZRequired);
                                                 }
-                                            });
-                                        } else {
-                                            /*if (ret > 0 || ret == -1) {
-                                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_RETRYING);
-                                            } else*/ if (ret == -10) {
-                                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_PASSPORT_MRZ);
-                                            } else if (ret == -11) {
-                                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_ID_MRZ);
-                                            } else if (ret == -12) {
-                                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_VISA_MRZ);
-                                            } /*else if (ret == -13) {
-                                                mReference.onUpdateProcess("D MRZ not detected");
-                                            }*/ else if (ret == -3) {
-                                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MRZ);
                                             }
-                                            mReference.refreshPreview();
-                                            bmCard.recycle();
+                                        } else {
+                                            mReference.onScannedSuccess(isDone, isMRZRequired);
                                         }
-                                        mReference.mRecCnt++; //counter increases
-                                    } else {
-                                        if (mReference.g_recogResult.recType == RecogEngine.RecType.INIT) {
-                                            ret = mReference.recogEngine.doRunData(bmCard, 0, mReference.g_recogResult, mReference.mrzDocumentType);
-                                            //                            if (ret <= 0 && mRecCnt > 2) {
-
-                                            //                                if (mRecCnt % 4 == 1)
-                                            //                            faceret = recogEngine.doRunFaceDetect(bmCard, g_recogResult);
-                                            if (mReference.g_recogResult.faceBitmap == null) {
-                                                mReference.recogEngine.doFaceDetect(mReference.mRecCnt, docBmp, mReference.g_recogResult, new RecogEngine.ScanListener() {
 
-                                                    @Override
-                                                    void onScannedSuccess(boolean isDone, boolean isMRZRequired) {
-                                                        mReference.onScannedSuccess(isDone, isMRZRequired);
-                                                    }
+                                    }
 
-                                                    @Override
-                                                    void onFaceScanned(Bitmap bitmap) {
-                                                        if (mReference.recogType == RecogType.MRZ) {
-                                                            if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
-                                                                mReference.g_recogResult.docFrontBitmap = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                                                mReference.sendInformation();
-                                                            } else {
-                                                                mReference.g_recogResult.docFrontBitmap = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                                                mReference.g_recogResult.recType = RecogEngine.RecType.FACE;
-                                                                mReference.refreshPreview();
-                                                            }
-                                                            mReference.g_recogResult.faceBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
-                                                            bmCard.recycle();
-                                                            docBmp.recycle();
-                                                        }
-                                                    }
-                                                });
+                                    @Override
+                                    void onFaceScanned(Bitmap bitmap) {
+                                        Util.logd("ocr_log", "detectFace: Done " + (mReference.g_recogResult.faceBitmap != null));
+                                        AccuraLog.loge(TAG, "mvpDone" + ((bitmap == null)?1:0));
+                                        if (mReference.recogType == RecogType.MRZ) {
+                                            if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
+                                                BestFrameRing.Candidate best = mReference.bestFrames.takeBest(docImage, sharpness, glare, bitmap, faceConfidence);
+                                                mReference.g_recogResult.faceBitmap = best.face;
+                                                Util.logd(TAG, "INIT");
+                                                AccuraLog.loge(TAG, "onDone");
+                                                mReference.g_recogResult.docFrontBitmap = best.document;
+                                                mReference.sendInformation();
+                                            } else {
+                                                mReference.g_recogResult.recType = RecogEngine.RecType.INIT;
+                                                mReference.g_recogResult.faceBitmap = null;
+                                                AccuraLog.loge(TAG, "onDone");
+                                                mReference.refreshPreview();
                                             }
-                                            //                            }
+                                        }
+                                    }
+                                });
+                            } else {
+                                /*if (ret > 0 || ret == -1) {
+                                    mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_RETRYING);
+                                } else*/ if (ret == -10) {
+                                    mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_PASSPORT_MRZ);
+                                } else if (ret == -11) {
+                                    mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_ID_MRZ);
+                                } else if (ret == -12) {
+                                    mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_VISA_MRZ);
+                                } /*else if (ret == -13) {
+                                    mReference.onUpdateProcess("D MRZ not detected");
+                                }*/ else if (ret == -3) {
+                                    mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MRZ);
+                                }
+                                mReference.refreshPreview();
+                            }
+                            mReference.mRecCnt++; //counter increases
+                        } else {
+                            if (mReference.g_recogResult.recType == RecogEngine.RecType.INIT) {
+                                ret = hasBand ? mReference.recogEngine.doRunData(mrzBmp, 0, mReference.g_recogResult, mReference.mrzDocumentType) : -3;
+                                //                            if (ret <= 0 && mRecCnt > 2) {
+
+                                //                                if (mRecCnt % 4 == 1)
+                                //                            faceret = recogEngine.doRunFaceDetect(bmCard, g_recogResult);
+                                if (mReference.g_recogResult.faceBitmap == null) {
+                                    mReference.recogEngine.doFaceDetect(mReference.mRecCnt, faceBmp != null ? faceBmp : docBmp, mReference.g_recogResult, new RecogEngine.ScanListener() {
+
+                                        @Override
+                                        void onScannedSuccess(boolean isDone, boolean isMRZRequired) {
+                                            mReference.onScannedSuccess(isDone, isMRZRequired);
+                                        }
 
-                                            mReference.mRecCnt++; //counter increases
-                                        } else if (mReference.g_recogResult.recType == RecogEngine.RecType.FACE) { //have to do mrz
-                                            ret = mReference.recogEngine.doRunData(docBmp, 0, mReference.g_recogResult, mReference.mrzDocumentType);
-                                            //                                    ret = mReference.recogEngine.doRunData(data, size.width, size.height, 0, mReference.mDisplayRotation, mReference.g_recogResult);
-                                            if (mReference.bRet > -1) {
-                                                mReference.bRet++;
-                                            }
-                                            mReference.mActivity.runOnUiThread(new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    if (ret > 0) {
-                                                        mReference.mRecCnt = 0; //counter sets 0
-                                                        Bitmap docBmp = bmCard;
-
-                                                        if ((mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.bRecDone) ||
-                                                                (mReference.g_recogResult.recType == RecogEngine.RecType.FACE && mReference.g_recogResult.bRecDone)) {
-                                                            if (mReference.bRet > 3 || mReference.bRet == -1) {
-                                                                mReference.g_recogResult.docBackBitmap = docBmp.copy(Bitmap.Config.ARGB_8888, false);
-                                                            } else {
-                                                                mReference.g_recogResult.docFrontBitmap = docBmp.copy(Bitmap.Config.ARGB_8888, false);
-                                                            }
-                                                        }
-
-                                                        if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ) {
-                                                            mReference.g_recogResult.docFrontBitmap = docBmp.copy(Bitmap.Config.ARGB_8888, false);
-                                                        }
-
-                                                        if (mReference.g_recogResult.recType == RecogEngine.RecType.BOTH ||
-                                                                mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && mReference.g_recogResult.bRecDone)
-                                                            mReference.g_recogResult.docFrontBitmap = docBmp.copy(Bitmap.Config.ARGB_8888, false);
-
-                                                        docBmp.recycle();
-                                                        bmCard.recycle();
-
-                                                        if (mReference.g_recogResult.bRecDone) {
-                                                            mReference.sendInformation();
-                                                        } else {
-                                                            //                                    onProcessUpdate(mActivity.getResources().getString(R.string.scan_front), null, true);
-                                                            mReference.refreshPreview();
-                                                        }
-                                                    } else {
-                                                    /*if (mRecCnt > 3 && faceret > 0) //detected only face, so need to detect mrz
-                                                    {
-                                                        mRecCnt = 0; //counter sets 0
-                                                        faceret = 0;
-                                                        g_recogResult.recType = RecogEngine.RecType.FACE;
-
-                                                        Bitmap docBmp = bmCard;
-                                                        g_recogResult.docFrontBitmap = docBmp.copy(Bitmap.Config.ARGB_8888, false);
-                    //                                    docBmp.recycle();
-                                                    } else*/
-                                                        bmCard.recycle();
-                                                        if (mReference.bRet == -1) {
-                                                            if (ret == -3) {
-                                                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MRZ);
-                                                            } else if (mReference.mrzDocumentType == MRZDocumentType.ID_CARD_MRZ && ret == -11) {
-                                                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_ID_MRZ);
-                                                            }
-                                                        }
-                                                        if (mReference.bRet == 3) {
-                                                            mReference.bRet = -1;
-                                                            mReference.onProcessUpdate(RecogEngine.SCAN_TITLE_MRZ_BACK, null, true);
-                                                        }
-
-                                                        if (mReference.g_recogResult.recType == RecogEngine.RecType.FACE || mReference.g_recogResult.faceBitmap != null) {
-                                                            mReference.refreshPreview();
-                                                        }
-                                                    }
+                                        @Override
+                                        void onFaceScanned(Bitmap bitmap) {
+                                            if (mReference.recogType == RecogType.MRZ) {
+                                                if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
+                                                    mReference.g_recogResult.docFrontBitmap = docImage.commit();
+                                                    mReference.sendInformation();
+                                                } else {
+                                                    mReference.g_recogResult.docFrontBitmap = docImage.commit();
+                                                    mReference.g_recogResult.recType = RecogEngine.RecType.FACE;
+                                                    mReference.refreshPreview();
                                                 }
-
-                                            });
-                                        } else if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ) { //have to do face
-                                            if (mReference.g_recogResult.faceBitmap == null) {
-                                                mReference.recogEngine.doFaceDetect(mReference.mRecCnt, docBmp, mReference.g_recogResult, new RecogEngine.ScanListener() {
-
-                                                    @Override
-                                                    void onScannedSuccess(boolean isDone, boolean isMRZRequired) {
-                                                        if (mReference.mrzDocumentType == MRZDocumentType.NONE) {
-                                                            if (!isDone && mReference.bRet > -1) {
-                                                                mReference.bRet++;
-                                                            }
-                                                            if (mReference.recogType == RecogType.MRZ) {
-                                                                if ((mReference.bRet > mReference.frameCount || mReference.bRet == -1) && mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
-                                                                    Util.logd(TAG, "INIT");
-                                                                    AccuraLog.loge(TAG, "onVDone");
-                                                                    mReference.g_recogResult.docFrontBitmap = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                                                    mReference.sendInformation();
-                                                                } else {
-                                                                    mReference.onScannedSuccess(isDone, isMRZRequired);
-                                                                }
-                                                                bmCard.recycle();
-                                                                docBmp.recycle();
-                                                            }
-                                                        } else {
-                                                            mReference.onScannedSuccess(isDone, isMRZRequired);
-                                                            bmCard.recycle();
-                                                            docBmp.recycle();
-                                                        }
-                                                    }
-
-                                                    @Override
-                                                    void onFaceScanned(Bitmap bitmap) {
-                                                        if (mReference.recogType == RecogType.MRZ) {
-                                                            if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && mReference.g_recogResult.lines.equalsIgnoreCase("")) {
-                                                                mReference.g_recogResult.faceBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
-                                                                mReference.g_recogResult.docFrontBitmap = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                                                mReference.sendInformation();
-                                                            }
-                                                            else {
-                                                                mReference.g_recogResult.docFrontBitmap = bmCard.copy(Bitmap.Config.ARGB_8888, false);
-                                                                bmCard.recycle();
-                                                                mReference.g_recogResult.recType = RecogEngine.RecType.FACE;
-                                                                mReference.refreshPreview();
-                                                            }
-                                                            bmCard.recycle();
-                                                        }
-                                                    }
-                                                });
+                                                mReference.g_recogResult.faceBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
                                             }
                                         }
-                                    }
+                                    });
                                 }
-                            } else {
-                                if (mReference.recogType == RecogType.MRZ && mReference.g_recogResult.recType == RecogEngine.RecType.FACE && mReference.bRet > -1) {
+                                //                            }
+
+                                mReference.mRecCnt++; //counter increases
+                            } else if (mReference.g_recogResult.recType == RecogEngine.RecType.FACE) { //have to do mrz
+                                ret = hasBand ? mReference.recogEngine.doRunData(mrzBmp, 0, mReference.g_recogResult, mReference.mrzDocumentType) : -3;
+                                //                                    ret = mReference.recogEngine.doRunData(data, size.width, size.height, 0, mReference.mDisplayRotation, mReference.g_recogResult);
+                                if (mReference.bRet > -1) {
                                     mReference.bRet++;
+                                }
+                                // the result is put together here on the worker, the main thread only gets the finished scan
+                                if (ret > 0) {
+                                    mReference.mRecCnt = 0; //counter sets 0
+                                    RecogResult result = mReference.g_recogResult;
+                                    boolean toFront = false, toBack = false;
+                                    if ((result.recType == RecogEngine.RecType.MRZ && !result.bRecDone) ||
+                                            (result.recType == RecogEngine.RecType.FACE && result.bRecDone)) {
+                                        if (mReference.bRet > 3 || mReference.bRet == -1) {
+                                            toBack = true;
+                                        } else {
+                                            toFront = true;
+                                        }
+                                    }
+                                    if (result.recType == RecogEngine.RecType.MRZ || result.recType == RecogEngine.RecType.BOTH) {
+                                        toFront = true;
+                                    }
+                                    if (toBack) {
+                                        result.docBackBitmap = docImage.commit();
+                                    }
+                                    if (toFront) {
+                                        result.docFrontBitmap = docImage.commit();
+                                    }
+
+                                    if (result.bRecDone) {
+                                        mReference.sendInformation();
+                                    } else {
+                                        //                                    onProcessUpdate(mActivity.getResources().getString(R.string.scan_front), null, true);
+                                        mReference.refreshPreview();
+                                    }
+                                } else {
+                                    if (mReference.bRet == -1) {
+                                        if (ret == -3) {
+                                            mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MRZ);
+                                        } else if (mReference.mrzDocumentType == MRZDocumentType.ID_CARD_MRZ && ret == -11) {
+                                            mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_ID_MRZ);
+                                        }
+                                    }
                                     if (mReference.bRet == 3) {
                                         mReference.bRet = -1;
                                         mReference.onProcessUpdate(RecogEngine.SCAN_TITLE_MRZ_BACK, null, true);
                                     }
-                                }
-//                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_BLUR_DOCUMENT);
-                                mReference.refreshPreview();
-                            }
-                        } else {
-                            AccuraLog.loge(TAG, "Retrieve Frame data");
-                            mReference.refreshPreview();
-                        }
 
-                        mReference._mutex.unlock();
+                                    if (mReference.g_recogResult.recType == RecogEngine.RecType.FACE || mReference.g_recogResult.faceBitmap != null) {
+                                        mReference.refreshPreview();
+                                    }
+                                }
+                            } else if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ) { //have to do face
+                                if (mReference.g_recogResult.faceBitmap == null) {
+                                    mReference.recogEngine.doFaceDetect(mReference.mRecCnt, faceBmp != null ? faceBmp : docBmp, mReference.g_recogResult, new RecogEngine.ScanListener() {
+
+                                        @Override
+                                        void onScannedSuccess(boolean isDone, boolean isMRZRequired) {
+                                            if (mReference.mrzDocumentType == MRZDocumentType.NONE) {
+                                                if (!isDone && mReference.bRet > -1) {
+                                                    mReference.bRet++;
+                                                }
+                                                if (mReference.recogType == RecogType.MRZ) {
+                                                    if ((mReference.bRet > mReference.frameCount || mReference.bRet == -1) && mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && !mReference.g_recogResult.lines.equalsIgnoreCase("")) {
+                                                        Util.logd(TAG, "INIT");
+                                                        AccuraLog.loge(TAG, "onVDone");
+                                                        mReference.g_recogResult.docFrontBitmap = docImage.commit();
+                                                        mReference.sendInformation();
+                                                    } else {
+                                                        mReference.onScannedSuccess(isDone, isMRZRequired);
+                                                    }
+                                                }
+                                            } else {
+                                                mReference.onScannedSuccess(isDone, isMRZRequired);
+                                            }
+                                        }
 
-                    } else {
-                        if (mReference.fCount % 4 == 0) {
-                            mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MOTION);
+                                        @Override
+                                        void onFaceScanned(Bitmap bitmap) {
+                                            if (mReference.recogType == RecogType.MRZ) {
+                                                if (mReference.g_recogResult.recType == RecogEngine.RecType.MRZ && mReference.g_recogResult.lines.equalsIgnoreCase("")) {
+                                                    mReference.g_recogResult.faceBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+                                                    mReference.g_recogResult.docFrontBitmap = docImage.commit();
+                                                    mReference.sendInformation();
+                                                }
+                                                else {
+                                                    mReference.g_recogResult.docFrontBitmap = docImage.commit();
+                                                    mReference.g_recogResult.recType = RecogEngine.RecType.FACE;
+                                                    mReference.refreshPreview();
+                                                }
+                                            }
+                                        }
+                                    });
+                                }
+                            }
                         }
-                        mReference.fCount++;
-                        mReference.refreshPreview();
                     }
                 } else {
-                    AccuraLog.loge(TAG, "ReleaseR");
+                    if (mReference.recogType == RecogType.MRZ && mReference.g_recogResult.recType == RecogEngine.RecType.FACE && mReference.bRet > -1) {
+                        mReference.bRet++;
+                        if (mReference.bRet == 3) {
+                            mReference.bRet = -1;
+                            mReference.onProcessUpdate(RecogEngine.SCAN_TITLE_MRZ_BACK, null, true);
+                        }
+                    }
+//                                mReference.onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_BLUR_DOCUMENT);
+                    mReference.refreshPreview();
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                AccuraLog.loge(TAG, "Thread - " + Log.getStackTraceString(e));
-            } finally {
-                processing.set(false);
+            } else {
+                AccuraLog.loge(TAG, "Retrieve Frame data");
+                mReference.refreshPreview();
             }
-
-            processing.set(false);
         }
     }
 
-    //    private Thread recogThread = null;
+    private FrameMailbox frameMailbox = new FrameMailbox();
+    private final PreviewBufferRing previewBuffers = new PreviewBufferRing();
+    // true when the worker should recognize its next frame, cleared by the worker when it takes one
+    // and set again by refreshPreview()
+    private volatile boolean mRecogArmed = false;
+    private RecogThread recogThread = null;
     private Thread nativeThread = null;
+    // longest wait for the frame in progress when the screen is destroyed
+    private static final long STOP_TIMEOUT_MS = 500;
 
     public OcrCameraPreview(Activity context) {
         this.mActivity = context;
-        this.detection = new RgbMotionDetection();
+        this.detection = new LumaMotionDetection();
+    }
+
+    private void startRecogThread() {
+        if (recogThread != null && frameMailbox.isOpen()) return;
+        // one mailbox per session, a worker which is still finishing sees its own mailbox closed and exits;
+        // the new worker joins it before taking a frame, so two workers never process frames at once
+        frameMailbox = new FrameMailbox();
+        frameMailbox.open();
+        recogThread = new RecogThread(this, frameMailbox, recogThread);
+        recogThread.start();
+    }
+
+    private void stopRecogThread() {
+        // the worker finishes the frame in progress and exits on its own
+        frameMailbox.close();
+    }
+
+    /**
+     * Stop the worker and run {@code afterStop} once it has finished the frame in progress. Waits
+     * up to {@link #STOP_TIMEOUT_MS} for the worker, after that {@code afterStop} runs on the
+     * worker itself when it leaves its loop.
+     */
+    private void stopRecogThread(Runnable afterStop) {
+        stopRecogThread();
+        RecogThread thread = recogThread;
+        if (thread == null) {
+            afterStop.run();
+            return;
+        }
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread.runOnExit(afterStop);
+    }
+
+    /**
+     * @return number of preview frames recognized by the worker in the current session
+     */
+    public long getProcessedFrameCount() {
+        return frameMailbox.getProcessedCount();
+    }
+
+    /**
+     * @return number of preview frames replaced by a newer frame before the worker picked them up
+     */
+    public long getSupersededFrameCount() {
+        return frameMailbox.getSupersededCount();
+    }
+
+    /**
+     * @return number of preview frames the worker dropped because recognition was not armed
+     */
+    public long getSkippedFrameCount() {
+        return frameMailbox.getSkippedCount();
     }
 
     /**
@@ -574,6 +830,16 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
         this.mrzDocumentType = mrzDocumentType;
     }
 
+    /**
+     * Detect the face of passports and visas on a second thread while the MRZ is read, instead of
+     * after it. Takes more CPU per frame but less time until the scan is done.
+     *
+     * @param concurrent is default false
+     */
+    public void setConcurrentFaceDetection(boolean concurrent) {
+        this.concurrentFaceDetection = concurrent;
+    }
+
 //    /**
 //     * set false to disable sound after scanned success
 //     * else true to enable sound
@@ -629,6 +895,8 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
         if (recogEngine == null) {
             recogEngine = new RecogEngine();
         }
+        // pooled scan bitmaps are freed on memory pressure
+        BitmapPool.getInstance().registerTrimCallbacks(mActivity);
         isValidate = true;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !Util.isPermissionsGranted(mActivity)) {
             throw new RuntimeException(mActivity.getPackageName() + " must have to granted Camera permission to access your hardware camera");
@@ -693,6 +961,8 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
         g_recogResult = new RecogResult();
         g_recogResult.recType = RecogEngine.RecType.INIT;
         g_recogResult.bRecDone = false;
+        recogEngine.resetMrzConsensus();
+        bestFrames.clear();
 
         recogEngine.setCallBack(this, recogType);
         if (recogType == RecogType.MRZ) {
@@ -836,6 +1106,7 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
         // if (mRecogService != null && mRecogService.isProcessing())
         // showProgress(null);
         mPausing = false;
+        startRecogThread();
 
         // Start the preview if it is not started.
         if (mCameraState == PREVIEW_STOPPED) {
@@ -873,8 +1144,7 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
             nativeThread.interrupt();
             nativeThread = null;
         }
-//        recogThread.interrupt();
-//        recogThread = null;
+        stopRecogThread();
 
         stopPreview();
 
@@ -910,11 +1180,69 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
 //        if (mediaPlayer != null)
 //            mediaPlayer.release();
         stopPreview();
-        recogEngine.closeEngine(1);
+        // the frame Mats and the engine are freed only after the worker left native code
+        stopRecogThread(new Runnable() {
+            @Override
+            public void run() {
+                bestFrames.clear();
+                recogEngine.releaseFrames();
+                releaseEngine();
+                AccuraLog.loge(TAG, BitmapPool.getInstance().getStats());
+            }
+        });
     }
 
-    public void closeEngine(boolean b) {
-        recogEngine.closeEngine(b ? 0 : 1);
+    public void closeEngine(final boolean b) {
+        stopRecogThread(new Runnable() {
+            @Override
+            public void run() {
+                recogEngine.releaseFrames();
+                // closed only if no other screen scans with it
+                dropEngine();
+                WarmEngineHolder.getInstance().close(b ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Initialize the card through {@link WarmEngineHolder}, the engine stays warm for the next screen.
+     *
+     * @return result of the card initialization or null if this screen is already destroyed
+     */
+    private InitModel acquireEngine() {
+        synchronized (engineLock) {
+            if (engineReleased) return null;
+        }
+        // not under the lock, acquire may wait for another screen and onDestroy must not block on it
+        InitModel initModel = WarmEngineHolder.getInstance().acquire(mActivity, recogType == RecogType.MRZ ? 0 : 1, mrzDocumentType);
+        synchronized (engineLock) {
+            if (!engineReleased) {
+                engineAcquired = true;
+                return initModel;
+            }
+        }
+        // screen destroyed while the card was initialized
+        WarmEngineHolder.getInstance().release();
+        return null;
+    }
+
+    private void releaseEngine() {
+        synchronized (engineLock) {
+            engineReleased = true;
+            dropEngine();
+        }
+    }
+
+    /**
+     * Give back the use of the engine by this screen, it stays warm for other screens.
+     */
+    private void dropEngine() {
+        synchronized (engineLock) {
+            if (engineAcquired) {
+                engineAcquired = false;
+                WarmEngineHolder.getInstance().release();
+            }
+        }
     }
 
     private class MainHandler extends Handler {
@@ -938,12 +1266,12 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
 
                 case TRIGER_RESTART_RECOG:
                     if (!mPausing && mCameraDevice != null)
-                        mCameraDevice.setOneShotPreviewCallback(OcrCameraPreview.this);
+                        mRecogArmed = true;
                     // clearNumberAreaAndResult();
                     break;
                 case STOP_RECOG:
                     if (!mPausing)
-                        mCameraDevice.setOneShotPreviewCallback(null);
+                        mRecogArmed = false;
                     // clearNumberAreaAndResult();
                     break;
             }
@@ -962,37 +1290,47 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
 
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
-        if (mPausing) {
-            return;
+        long start = System.nanoTime();
+        try {
+            handlePreviewFrame(data, camera);
+        } finally {
+            mainThread.add(start);
         }
+    }
 
-        if (mCameraState != IDLE) {
-            mCameraDevice.setOneShotPreviewCallback(OcrCameraPreview.this);
+    private void handlePreviewFrame(byte[] data, Camera camera) {
+        if (mPausing) {
             return;
         }
 
-        if (!isPreviewStarted) {
-//            refreshPreview();
+        if (mCameraState != IDLE || !isPreviewStarted) {
+            previewBuffers.recycle(camera, data);
             return;
         }
 
         if (!GlobalData.isPhoneInMotion()) {
-            AccuraLog.loge(TAG, "Pro. Frame");
-            RecogThread recogThread = new RecogThread(this, data, camera);
-
-            recogThread.start();
+            // every frame goes to the mailbox, while the worker is busy the waiting frame is
+            // superseded by the newer one; the worker recognizes it only once re-armed
+            startRecogThread();
+            FrameMailbox.Frame dropped = frameMailbox.offer(data, camera);
+            if (dropped != null) {
+                previewBuffers.recycle(dropped.camera, dropped.data);
+            }
 //            fCount++;
         } else {
-            onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MOTION);
-            refreshPreview();
+            if (mRecogArmed) onUpdateProcess(RecogEngine.ACCURA_ERROR_CODE_MOTION);
+            previewBuffers.recycle(camera, data);
 //            fCount++;
         }
     }
 
+    /**
+     * Recognize the next preview frame. Frames keep arriving in pooled buffers,
+     * so there is no need to wait before re-arming.
+     */
     private void refreshPreview() {
-        mHandler.sendMessageDelayed(
-                mHandler.obtainMessage(TRIGER_RESTART_RECOG),
-                TRIGER_RESTART_RECOG_DELAY);
+        if (!mPausing && mCameraDevice != null)
+            mRecogArmed = true;
 //        if (!mPausing && mCameraDevice != null) {
 //            mCameraDevice.setOneShotPreviewCallback(OcrCameraPreview.this);
 //        }
@@ -1273,8 +1611,8 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
             setPreviewDisplay(cameraSourcePreview.getHolder());
             setDisplayOrientation();
 
-            mCameraDevice.setOneShotPreviewCallback(OcrCameraPreview.this);
             setCameraParameters(UPDATE_PARAM_ALL);
+            setPreviewBuffers();
 
             // Inform the mainthread to go on the UI initialization.
             if (mCameraPreviewThread != null) {
@@ -1308,11 +1646,25 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
             return;
         mCameraDevice.stopPreview();
 //        mCameraDevice.setPreviewCallback(null);
+        previewBuffers.detach();
         setCameraState(PREVIEW_STOPPED);
     }
 
+    /**
+     * Let the camera deliver frames into a fixed set of buffers sized from the current preview size.
+     */
+    private void setPreviewBuffers() {
+        if (mCameraDevice == null) return;
+        Camera.Parameters parameters = mParameters != null ? mParameters : mCameraDevice.getParameters();
+        Camera.Size size = parameters.getPreviewSize();
+        mCameraDevice.setPreviewCallbackWithBuffer(OcrCameraPreview.this);
+        previewBuffers.attach(mCameraDevice, size.width, size.height, parameters.getPreviewFormat());
+        mRecogArmed = true;
+    }
+
     private void closeCamera() {
         if (mCameraDevice != null) {
+            previewBuffers.detach();
             CameraHolder.instance().release();
             mCameraDevice.setErrorCallback(null);
             mCameraDevice = null;
@@ -1565,9 +1917,9 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
                         e.printStackTrace();
                     }
                 };
-                Runnable runnable1 = () -> new Handler().postDelayed(runnable, 1500);
+                Runnable runnable1 = () -> new Handler().postDelayed(mainThread.wrap(runnable), 1500);
                 if (mActivity != null) {
-                    mActivity.runOnUiThread(runnable1);
+                    mActivity.runOnUiThread(mainThread.wrap(runnable1));
                 }
             }
         }
@@ -1605,11 +1957,6 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
 //        }
         recogEngine.removeCallBack(this);
 //        recogEngine.closeEngine(0);
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
         mRecCnt = 0;
         bRet = 0;
         fCount = 0;
@@ -1621,15 +1968,52 @@ abstract class OcrCameraPreview extends RecogEngine.ScanListener implements Came
 //            g_recogResult.docFrontBitmap = null;
 //            g_recogResult.docBackBitmap = null;
             RecogResult recogResult = g_recogResult;
+            recogResult.decodeFields();
 
             g_recogResult = new RecogResult();
             g_recogResult.recType = RecogEngine.RecType.INIT;
             g_recogResult.bRecDone = false;
-            onScannedComplete(recogResult);
+            recogEngine.resetMrzConsensus();
+            deliverResult(recogResult);
         }
 
     }
 
+    /**
+     * Give the scanned result to the main thread. On the recognition worker the result waits until
+     * the frame which completed it is finished, so the app never gets it while the frame is in use.
+     */
+    private void deliverResult(RecogResult result) {
+        if (Thread.currentThread() instanceof RecogThread) {
+            completedResult = result;
+        } else {
+            postResult(result);
+        }
+    }
+
+    private void postResult(final RecogResult result) {
+        if (mActivity == null) return;
+        mActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                onScannedComplete(result);
+                mainThread.add(start);
+                AccuraLog.loge(TAG, "Scan done, " + mainThread.finish());
+            }
+        });
+    }
+
+    /**
+     * Jank metric of the scan: time the last finished scan spent on the main thread, for preview
+     * callbacks, messages and the delivery of the result.
+     *
+     * @return main thread time in milliseconds
+     */
+    public long getMainThreadTime() {
+        return mainThread.getLastScanMillis();
+    }
+
     private String bitmapToBytes(Bitmap bitmap) {
         if (bitmap != null && !bitmap.isRecycled()) {
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -0,0 +1,84 @@
+package com.docrecog.scan;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+
+/**
+ * Small set of preview buffers handed to {@link Camera#addCallbackBuffer(byte[])} so the camera
+ * fills the same arrays again instead of allocating a new frame for every preview callback.
+ *
+ * <p>A buffer is given back to the camera only through {@link #recycle(Camera, byte[])}, i.e. after
+ * the frame it holds has been processed or dropped. Buffers of an earlier preview session
+ * (camera re-opened or preview size changed) are not accepted back.
+ */
+final class PreviewBufferRing {
+
+    static final int DEFAULT_BUFFER_COUNT = 3;
+
+    private final int bufferCount;
+    private byte[][] buffers = new byte[0][];
+    private Camera camera = null;
+
+    PreviewBufferRing() {
+        this(DEFAULT_BUFFER_COUNT);
+    }
+
+    PreviewBufferRing(int bufferCount) {
+        if (bufferCount < 1) throw new IllegalArgumentException("bufferCount must be at least 1");
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * Allocate buffers for the given preview size and queue all of them on the camera.
+     * Must be called after the preview size and format have been set on the camera.
+     *
+     * @param camera camera which will fill the buffers
+     * @param width  preview width
+     * @param height preview height
+     * @param format preview format, {@link ImageFormat#NV21} by default
+     */
+    synchronized void attach(Camera camera, int width, int height, int format) {
+        int bitsPerPixel = ImageFormat.getBitsPerPixel(format);
+        if (bitsPerPixel <= 0) bitsPerPixel = ImageFormat.getBitsPerPixel(ImageFormat.NV21);
+        int frameSize = (int) Math.ceil(width * height * bitsPerPixel / 8.0);
+
+        this.camera = camera;
+        this.buffers = new byte[bufferCount][frameSize];
+        for (byte[] buffer : buffers) {
+            camera.addCallbackBuffer(buffer);
+        }
+    }
+
+    /**
+     * Forget the current buffers, buffers still in use will not be given back to the camera.
+     */
+    synchronized void detach() {
+        camera = null;
+        buffers = new byte[0][];
+    }
+
+    /**
+     * Give a buffer back to the camera to be filled with a next frame.
+     *
+     * @param camera camera which delivered the frame
+     * @param data   frame buffer
+     * @return true if the buffer was queued on the camera again
+     */
+    synchronized boolean recycle(Camera camera, byte[] data) {
+        if (camera == null || data == null || camera != this.camera || !owns(data)) return false;
+        try {
+            camera.addCallbackBuffer(data);
+            return true;
+        } catch (RuntimeException e) {
+            // camera has already been released
+            return false;
+        }
+    }
+
+    private boolean owns(byte[] data) {
+        for (byte[] buffer : buffers) {
+            if (buffer == data) return true;
+        }
+        return false;
+    }
+}
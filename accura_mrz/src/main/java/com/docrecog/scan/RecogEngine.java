@@ -4,26 +4,41 @@ package com.docrecog.scan;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
-import android.text.TextUtils;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 
 import com.accurascan.ocr.mrz.model.InitModel;
+import com.accurascan.ocr.mrz.model.MrzFields;
 import com.accurascan.ocr.mrz.model.RecogResult;
 import com.accurascan.ocr.mrz.util.AccuraLog;
+import com.accurascan.ocr.mrz.util.BitmapPool;
+import com.accurascan.ocr.mrz.util.MrzValidator;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.opencv.android.Utils;
 import org.opencv.core.Mat;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class RecogEngine {
 
@@ -91,15 +106,15 @@ public class RecogEngine {
     public static final String ACCURA_ERROR_CODE_VISA_MRZ = "14";
 
     private static final String TAG = "PassportRecog";
-    private byte[] pDic = null;
-    private int pDicLen = 0;
-    private byte[] pDic1 = null;
-    private int pDicLen1 = 0;
     private static String[] assetNames = {"mMQDF_f_Passport_bottom_Gray.dic", "mMQDF_f_Passport_bottom.dic"};
 //    private static FirebaseVisionFaceDetector faceDetector;
     private ScanListener callBack;
     static float mT = 15;
     static float v = 5f;
+    // values of setBlurPercentage and setGlarePercentage, negative if not set: a set value switches on
+    // the matching FrameQuality pre-check
+    static int blurPercentage = -1;
+    static int glareMinPercentage = -1;
 
     private static int[] faced = new int[3]; //value for detected face or not
     private static float[] fConf = new float[3]; //face detection confidence
@@ -110,6 +125,14 @@ public class RecogEngine {
 
     private Context con;
     private boolean displayDialog = true;
+    private final FrameMatContext frameMats = new FrameMatContext();
+    private final NativeResponse response = new NativeResponse();
+    private final MrzFields readFields = new MrzFields();
+    private final MrzConsensus mrzConsensus = new MrzConsensus();
+    private final MrzLineAssembler lineAssembler = new MrzLineAssembler();
+    /** Reads with wrong check digits before a read is accepted as the native side gave it. */
+    private static final int MAX_CONSENSUS_READS = 4;
+    private static final Gson GSON = new Gson();
 
     public RecogEngine() {
 
@@ -205,6 +228,7 @@ public class RecogEngine {
     private native int closeOCR(int i);
 
     public int setBlurPercentage(Context context, int blurPercentage) {
+        RecogEngine.blurPercentage = blurPercentage;
         return setBlurPercentage(context, blurPercentage,"");
     }
 
@@ -213,6 +237,7 @@ public class RecogEngine {
     }
 
     public int setGlarePercentage(Context context, int minValue, int maxValue) {
+        glareMinPercentage = minValue;
         return setGlarePercentage(context, minValue, maxValue,"");
     }
 
@@ -258,10 +283,12 @@ public class RecogEngine {
          */
         this.con = context;
         SDKModel sdkModel = new SDKModel();
-        getAssetFile(assetNames[0], assetNames[1]);
+        // dictionaries are only referenced here, native keeps its own copy after loadDictionary
+        byte[] pDic = readAsset(assetNames[0]);
+        byte[] pDic1 = readAsset(assetNames[1]);
         int[] ints = new int[5];
 //        File file = loadClassifierData(context);
-        int ret = loadDictionary(context, /*file != null ? file.getAbsolutePath() : */"", pDic, pDicLen, pDic1, pDicLen1, context.getAssets(),ints);
+        int ret = loadDictionary(context, /*file != null ? file.getAbsolutePath() : */"", pDic, pDic != null ? pDic.length : 0, pDic1, pDic1 != null ? pDic1.length : 0, context.getAssets(),ints);
         Log.i("recogPassport", "loadDictionary: " + ret);
 //        nM = "Keep Document Steady";
         if (ret < 0) {
@@ -288,8 +315,11 @@ public class RecogEngine {
                         AlertDialog alert11 = builder1.create();
                         alert11.show();
                     });
-                } else
-                    Toast.makeText(context, message, Toast.LENGTH_SHORT).show();
+                } else {
+                    // initEngine may run on a background thread
+                    final String toastMessage = message;
+                    new Handler(Looper.getMainLooper()).post(() -> Toast.makeText(context, toastMessage, Toast.LENGTH_SHORT).show());
+                }
             }
         } else {
             sdkModel.isMRZEnable = ints[0] == 1;//isMrzEnable;//ret == 1 || ret == 4 || ret == 6 || ret == 7;
@@ -298,6 +328,19 @@ public class RecogEngine {
         return sdkModel;
     }
 
+    /**
+     * Same as {@link #initEngine(Context)} but the dictionaries are read and loaded on a
+     * background thread, so it can be called from the main thread.
+     *
+     * @param context
+     * @return handle to wait for the {@link SDKModel} of initEngine
+     */
+    public Future<SDKModel> initEngineAsync(Context context) {
+        FutureTask<SDKModel> task = new FutureTask<>(() -> initEngine(context));
+        new Thread(task, "AccuraInitEngine").start();
+        return task;
+    }
+
     /**
      * Initialized MRZ
      *
@@ -309,59 +352,144 @@ public class RecogEngine {
         String s = loadCard(context, recogType);
         try {
             if (s != null && !s.equals("")) {
-                JSONObject jsonObject = new JSONObject(s);
-                InitModel initModel = new Gson().fromJson(jsonObject.toString(), InitModel.class);
-                return initModel;
+                return GSON.fromJson(s, InitModel.class);
             }
-        } catch (JSONException e) {
+        } catch (JsonParseException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Start checks of a new camera frame, the frame bitmap is converted to a Mat only once
+     * for {@link #checkLight(Bitmap)} and {@link #checkValid(Bitmap)} until {@link #endFrame()}.
+     */
+    void beginFrame() {
+        frameMats.begin();
+    }
+
+    /**
+     * Start checks of a new camera frame given as NV21 data. The scan area is cropped, rotated and
+     * converted inside OpenCV, no Bitmap is needed until {@link #getFrameBitmap(Mat, Bitmap)}.
+     *
+     * @param nv21           NV21 preview frame
+     * @param width          preview width
+     * @param height         preview height
+     * @param rotationDegree clockwise rotation of the preview
+     * @param cropRect       scan area in rotated image coordinates
+     * @return RGBA Mat of the scan area valid until {@link #endFrame()}, null if it could not be built
+     */
+    Mat beginFrame(byte[] nv21, int width, int height, int rotationDegree, Rect cropRect) {
+        frameMats.begin();
+        try {
+            return frameMats.getNV21(nv21, width, height, rotationDegree, cropRect);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param bitmap frame bitmap
+     * @return Mat of the bitmap, converted once per frame
+     */
+    Mat getFrameMat(Bitmap bitmap) {
+        return frameMats.get(bitmap);
+    }
+
+    /**
+     * @param frame Mat returned by {@link #beginFrame(byte[], int, int, int, Rect)}
+     * @param reuse bitmap of a previous frame to be filled again, may be null
+     * @return document bitmap of the frame
+     */
+    Bitmap getFrameBitmap(Mat frame, Bitmap reuse) {
+        return FrameMatContext.toBitmap(frame, reuse);
+    }
+
+    /**
+     * @param frame  Mat returned by {@link #beginFrame(byte[], int, int, int, Rect)}
+     * @param region part of the frame in frame coordinates
+     * @param reuse  bitmap of a previous frame to be filled again, may be null
+     * @return bitmap of the region
+     */
+    Bitmap getFrameBitmap(Mat frame, Rect region, Bitmap reuse) {
+        Mat roi = frame.submat(region.top, region.bottom, region.left, region.right);
+        try {
+            return FrameMatContext.toBitmap(roi, reuse);
+        } finally {
+            roi.release();
+        }
+    }
+
+    /**
+     * End of the frame checks, Mats go back to the pool.
+     */
+    void endFrame() {
+        frameMats.end();
+    }
+
     boolean checkValid(Bitmap bitmap) {
-        Mat src = new Mat();
-        Utils.bitmapToMat(bitmap, src);
+        return checkValid(frameMats.get(bitmap));
+    }
+
+    boolean checkValid(Mat src) {
         String s = doCheckDocument(src.getNativeObjAddr(), v);
-        if (s != null && !s.equals("")) {
-            src.release();
-            try {
-                JSONObject jsonObject = new JSONObject(s);
-                int ic = jsonObject.getInt("responseCode");
-                if (ic == 1) {
-                    return true;
-                } else {
-                    String message = jsonObject.getString("responseMessage");
-                    if (!message.isEmpty() && this.callBack != null) {
-                        this.callBack.onUpdateProcess(message);
-                    }
-                    return false;
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
+        int ic;
+        String message;
+        synchronized (response) {
+            if (!response.parse(s)) return false;
+            ic = response.getCode();
+            message = response.getMessage();
+        }
+        if (ic == 1) {
+            return true;
+        } else {
+            if (!message.isEmpty() && this.callBack != null) {
+                this.callBack.onUpdateProcess(message);
             }
+            return false;
+        }
+    }
+
+    /**
+     * Reject a NV21 frame which is clearly blurred or glared before it is converted for the native checks.
+     *
+     * @param quality        measures the frame, keeps its scores
+     * @param nv21           NV21 preview frame
+     * @param width          preview width
+     * @param height         preview height
+     * @param rotationDegree clockwise rotation of the preview
+     * @param cropRect       scan area in rotated image coordinates
+     * @return true if the frame is good enough for the native checks
+     */
+    boolean checkQuality(FrameQuality quality, byte[] nv21, int width, int height, int rotationDegree, Rect cropRect) {
+        Rect area = cropRect == null ? null : FrameMatContext.toSensorRect(width, height, rotationDegree, cropRect, new Rect());
+        if (area == null) return true;
+        int ret = quality.check(nv21, width, height, area, blurPercentage >= 0 && blurPercentage < 100, glareMinPercentage >= 0);
+        if (ret == FrameQuality.OK) return true;
+        AccuraLog.loge(TAG, "Frame quality " + ret + ", sharpness " + quality.getSharpness() + ", glare " + quality.getGlare());
+        if (this.callBack != null) {
+            this.callBack.onUpdateProcess(ret == FrameQuality.GLARE ? ACCURA_ERROR_CODE_GLARE_DOCUMENT : ACCURA_ERROR_CODE_BLUR_DOCUMENT);
         }
-        src.release();
         return false;
     }
 
     boolean checkLight(Bitmap bitmap) {
-        int ret = 0;
-        Mat src = new Mat();
-        Utils.bitmapToMat(bitmap, src);
+        return checkLight(frameMats.get(bitmap));
+    }
+
+    boolean checkLight(Mat src) {
+        int ret;
+        String message;
         String s = doLightCheck(src.getNativeObjAddr());
-        try {
-            if (s != null && !TextUtils.isEmpty(s)) {
-                JSONObject jsonObject = new JSONObject(s);
-                ret = jsonObject.getInt("responseCode");
-                if (ret > 0) {
-                    callBack.onUpdateProcess(jsonObject.getString("responseMessage"));
-                }
-            }
-        } catch (JSONException e) {
-            e.printStackTrace();
+        synchronized (response) {
+            if (!response.parse(s)) return false;
+            ret = response.getCode();
+            message = response.getMessage();
+        }
+        if (ret > 0) {
+            callBack.onUpdateProcess(message);
         }
-        src.release();
         return ret == 1;
     }
 
@@ -385,6 +513,33 @@ public class RecogEngine {
         }
         ret = doRecogBitmap(bmCard, 0, intData, faceBmp, faced, true, documentType.value);
         AccuraLog.loge(TAG, "GetM - " + documentType + "," + ret);
+        String agreed = null;
+        if (ret > 0) {
+            readFields.set(intData);
+            String lines = readFields.get(MrzFields.LINES);
+            String corrected = MrzValidator.correct(lines, documentType);
+            if (corrected != null) {
+                // valid, or salvaged by an unambiguous repair of OCR confusions
+                if (!corrected.equals(lines)) agreed = corrected;
+            } else if ((agreed = lineAssembler.add(lines, documentType)) != null) {
+                // every line was read valid in one of the frames
+                AccuraLog.loge(TAG, "Assembled");
+            } else if (mrzConsensus.add(lines, documentType)) {
+                // check digits failed or the repair was ambiguous, wait until the reads of several frames agree
+                agreed = mrzConsensus.getResult();
+                if (agreed == null && mrzConsensus.getReadCount() < MAX_CONSENSUS_READS) {
+                    AccuraLog.loge(TAG, "Vote " + mrzConsensus.getReadCount());
+                    return 0;
+                }
+                // no valid vote after MAX_CONSENSUS_READS, the read is used as the native side gave it
+            }
+            if (agreed != null && !MrzFieldRebuilder.rebuild(readFields, agreed, documentType)) {
+                // the fields of this read can not be matched with the repaired lines, try the next frame
+                return 0;
+            }
+            mrzConsensus.reset();
+            lineAssembler.reset();
+        }
         if (ret > 0) {
             if (result.recType == RecType.INIT) {
                 if (faced[0] == 0) {
@@ -404,12 +559,62 @@ public class RecogEngine {
             }
 
             result.ret = ret;
-            result.SetResult(intData);
+            // field Strings are created once the result is sent, see RecogResult#decodeFields()
+            result.setRawResult(readFields);
         }
 //        }
         return ret;
     }
 
+    /**
+     * Forget the MRZ reads of the previous scan.
+     */
+    void resetMrzConsensus() {
+        mrzConsensus.reset();
+        lineAssembler.reset();
+    }
+
+    /**
+     * Face found by {@link #detectFace(Bitmap)}, given to a {@link ScanListener} by
+     * {@link #onFaceResult(FaceResult, RecogResult, ScanListener)}.
+     */
+    static final class FaceResult {
+        /** No face in the document. */
+        static final int NOT_FOUND = 0;
+        /** Face found and its quality check passed. */
+        static final int ACCEPTED = 1;
+        /** Face found but rejected by the quality check, {@link #message} tells why if not null. */
+        static final int REJECTED = 2;
+        /** Face found, the quality check gave no decision. */
+        static final int UNDECIDED = 3;
+
+        static final FaceResult NONE = new FaceResult(NOT_FOUND, null, null);
+
+        final int state;
+        final Bitmap face;
+        final String message;
+        /** Detection confidence of the native face detection, 0 if no face was found. */
+        final float confidence;
+
+        private FaceResult(int state, Bitmap face, String message) {
+            this(state, face, message, 0);
+        }
+
+        private FaceResult(int state, Bitmap face, String message, float confidence) {
+            this.state = state;
+            this.face = face;
+            this.message = message;
+            this.confidence = confidence;
+        }
+
+        /**
+         * Give the face bitmap back to the {@link BitmapPool}.
+         */
+        void release() {
+            if (face != null) BitmapPool.getInstance().release(face);
+        }
+    }
+
     /**
      * To detect face from your camera frame
      * @param i
@@ -418,48 +623,100 @@ public class RecogEngine {
      * @param scanListener   call back required to getting success or failed response
      */
     void doFaceDetect(int i, Bitmap bitmap, RecogResult result, ScanListener scanListener) {
+        onFaceResult(detectFace(bitmap), result, scanListener);
+    }
+
+    /**
+     * Detect the face and check its quality without calling any listener, so it can run on another
+     * thread than the MRZ recognition (see {@link MrzFaceJoin}).
+     *
+     * @param bitmap document bitmap
+     * @return result to be given to {@link #onFaceResult(FaceResult, RecogResult, ScanListener)}
+     */
+    FaceResult detectFace(Bitmap bitmap) {
         AccuraLog.loge(TAG, "MF Detect");
-        Bitmap faceBitmap = Bitmap.createBitmap(NOR_W, NOR_H, Config.ARGB_8888);
+        BitmapPool pool = BitmapPool.getInstance();
+        Bitmap faceBitmap = pool.acquire(NOR_W, NOR_H);
+        faceBitmap.eraseColor(Color.TRANSPARENT);
         int ret = doFaceDetect(bitmap, faceBitmap, fConf);
 
         //ret > 0 => detect face ok
-        if (ret <= 0) faceBitmap = null;
-        else if (fConf[1] < NOR_W || fConf[2] < NOR_H)
-            faceBitmap = Bitmap.createBitmap(faceBitmap, 0, 0, (int) fConf[1], (int) fConf[2]);
-
-        if (ret > 0 && result.recType == RecType.MRZ)
-            result.bRecDone = true;
+        if (ret <= 0) {
+            pool.release(faceBitmap);
+            return FaceResult.NONE;
+        }
+        float confidence = fConf[0];
+        int faceWidth = (int) fConf[1], faceHeight = (int) fConf[2];
+        if ((faceWidth < NOR_W || faceHeight < NOR_H) && faceWidth > 0 && faceHeight > 0) {
+            Bitmap cropped = pool.acquire(faceWidth, faceHeight);
+            cropped.eraseColor(Color.TRANSPARENT);
+            new Canvas(cropped).drawBitmap(faceBitmap, 0, 0, null);
+            pool.release(faceBitmap);
+            faceBitmap = cropped;
+        }
 
-        if (ret > 0) {
-            Mat clone = new Mat();
-            Utils.bitmapToMat(faceBitmap, clone);
-            String s = doFaceCheck(clone.getNativeObjAddr(), v);
-            clone.release();
-            try {
-                if (s != null && !s.equals("")) {
-                    JSONObject jsonObject = new JSONObject(s);
-                    int ic = jsonObject.getInt("responseCode");
-                    AccuraLog.loge(TAG, "checkf" + ic);
-                    if (ic == 1) {
-                        scanListener.onFaceScanned(faceBitmap.copy(Config.ARGB_8888, false));
-                    } else if (ic == 10) {
-                        AccuraLog.loge(TAG, "failed check: "+ic );
-                        String message = jsonObject.getString("responseMessage");
-                        if (!message.isEmpty() && this.callBack != null) {
-                            this.callBack.onUpdateProcess(message);
-                            scanListener.onScannedSuccess(false, false);
-                        }
+        Mat clone = frameMats.acquire();
+        Utils.bitmapToMat(faceBitmap, clone);
+        String s = doFaceCheck(clone.getNativeObjAddr(), v);
+        boolean parsed;
+        int ic;
+        String message;
+        synchronized (response) {
+            parsed = response.parse(s);
+            ic = response.getCode();
+            message = response.getMessage();
+        }
+        FaceResult faceResult = new FaceResult(FaceResult.UNDECIDED, null, null);
+        if (s != null && !s.equals("")) {
+            if (parsed) {
+                AccuraLog.loge(TAG, "checkf" + ic);
+                if (ic == 1) {
+                    // the listener copies the face, it is recycled after the call
+                    return new FaceResult(FaceResult.ACCEPTED, faceBitmap, null, confidence);
+                } else if (ic == 10) {
+                    AccuraLog.loge(TAG, "failed check: "+ic );
+                    if (!message.isEmpty()) {
+                        faceResult = new FaceResult(FaceResult.REJECTED, null, message);
                     }
-                } else scanListener.onScannedSuccess(false, false);
-                faceBitmap.recycle();
-            } catch (JSONException e) {
-                faceBitmap.recycle();
-                e.printStackTrace();
+                }
             }
-        } else {
-            callBack.onUpdateProcess(ACCURA_ERROR_CODE_FACE);
-            scanListener.onScannedSuccess(false, false);
+        } else faceResult = new FaceResult(FaceResult.REJECTED, null, null);
+        pool.release(faceBitmap);
+        return faceResult;
+    }
+
+    /**
+     * Give a face detected by {@link #detectFace(Bitmap)} to the listener, the face bitmap goes back
+     * to the {@link BitmapPool} afterwards.
+     *
+     * @param face         detected face
+     * @param result       to save face image
+     * @param scanListener call back required to getting success or failed response
+     */
+    void onFaceResult(FaceResult face, RecogResult result, ScanListener scanListener) {
+        if (face.state != FaceResult.NOT_FOUND && result.recType == RecType.MRZ)
+            result.bRecDone = true;
+
+        switch (face.state) {
+            case FaceResult.NOT_FOUND:
+                callBack.onUpdateProcess(ACCURA_ERROR_CODE_FACE);
+                scanListener.onScannedSuccess(false, false);
+                break;
+            case FaceResult.ACCEPTED:
+                scanListener.onFaceScanned(face.face);
+                break;
+            case FaceResult.REJECTED:
+                if (face.message == null) {
+                    scanListener.onScannedSuccess(false, false);
+                } else if (this.callBack != null) {
+                    this.callBack.onUpdateProcess(face.message);
+                    scanListener.onScannedSuccess(false, false);
+                }
+                break;
+            default:
+                break;
         }
+        face.release();
     }
 
     private Bitmap bitmapFromMat(Mat mat) {
@@ -471,38 +728,80 @@ public class RecogEngine {
         return null;
     }
 
-    private int getAssetFile(String fileName, String fileName1) {
-
-        int size = 0;
+    /**
+     * Read a dictionary asset. Uncompressed assets are read through a {@link FileChannel} of known
+     * length, compressed ones are streamed until the end of the asset.
+     *
+     * @return content of the asset or null if it could not be read
+     */
+    private byte[] readAsset(String fileName) {
+        AssetManager assets = this.con.getResources().getAssets();
         try {
-            InputStream is = this.con.getResources().getAssets().open(fileName);
-            size = is.available();
-            pDic = new byte[size];
-            pDicLen = size;
-            is.read(pDic);
-            is.close();
+            AssetFileDescriptor fd = assets.openFd(fileName);
+            try (FileInputStream in = fd.createInputStream(); FileChannel channel = in.getChannel()) {
+                byte[] bytes = new byte[(int) fd.getLength()];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                long position = fd.getStartOffset();
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0) throw new EOFException(fileName);
+                    position += read;
+                }
+                return bytes;
+            } finally {
+                fd.close();
+            }
+        } catch (FileNotFoundException e) {
+            // compressed asset, it has no file descriptor
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
 
-        try {
-            InputStream is = this.con.getResources().getAssets().open(fileName1);
-            size = is.available();
-            pDic1 = new byte[size];
-            pDicLen1 = size;
-            is.read(pDic1);
-            is.close();
+        try (InputStream is = assets.open(fileName)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(is.available(), 8192));
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        return size;
+        return null;
     }
 
     void closeEngine(int destroy) {
+        frameMats.release();
         closeOCR(destroy);
     }
 
+    /**
+     * Release the native memory used for frame checks, the engine itself stays loaded.
+     */
+    void releaseFrames() {
+        frameMats.release();
+    }
+
+    /**
+     * Scan screens keep the engine initialized after they are closed, so the next scan starts
+     * without loading it again. Call this method on memory pressure (e.g. from
+     * {@link android.content.ComponentCallbacks2#onTrimMemory(int)}) to close it if no scan is running.
+     * Bitmaps kept for reuse by the {@link BitmapPool} are freed as well.
+     */
+    public static void releaseIdleEngine() {
+        WarmEngineHolder.getInstance().trim();
+        BitmapPool.getInstance().trim();
+    }
+
+    /**
+     * @param idleTimeout time in milliseconds after which an unused engine is closed, 60 seconds by default
+     */
+    public static void setEngineIdleTimeout(long idleTimeout) {
+        WarmEngineHolder.getInstance().setIdleTimeout(idleTimeout);
+    }
+
     public enum RecType {
         INIT, BOTH, FACE, MRZ
     }
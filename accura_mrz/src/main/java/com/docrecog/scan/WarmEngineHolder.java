@@ -0,0 +1,162 @@
+package com.docrecog.scan;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.accurascan.ocr.mrz.model.InitModel;
+import com.accurascan.ocr.mrz.util.AccuraLog;
+
+/**
+ * Keeps the native card initialization of {@link RecogEngine#initCard(Context, int)} alive for the
+ * whole process, so scan screens opened one after the other do not load it again.
+ *
+ * <p>Every scan screen calls {@link #acquire(Context, int, MRZDocumentType)} once it starts and
+ * {@link #release()} when it is destroyed. The card is initialized again only if the configuration
+ * (card type and {@link MRZDocumentType}) differs from the last one, and only once no other screen
+ * uses the engine: a screen with another configuration waits up to {@link #RECONFIGURE_TIMEOUT_MS}
+ * for the others to release it. When no screen uses the engine anymore it is closed after
+ * {@link #DEFAULT_IDLE_TIMEOUT_MS}, or right away by {@link #trim()}.
+ */
+final class WarmEngineHolder {
+
+    static final long DEFAULT_IDLE_TIMEOUT_MS = 60 * 1000;
+    // the previous screen usually releases the engine in its onDestroy, shortly after the next one starts
+    static final long RECONFIGURE_TIMEOUT_MS = 2000;
+
+    private static final String TAG = WarmEngineHolder.class.getSimpleName();
+    private static final WarmEngineHolder INSTANCE = new WarmEngineHolder();
+
+    private final RecogEngine engine = new RecogEngine();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable idleRelease = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WarmEngineHolder.this) {
+                if (refCount == 0) close(1);
+            }
+        }
+    };
+
+    private int refCount = 0;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT_MS;
+    private InitModel initModel = null;
+    private int cardType = -1;
+    private MRZDocumentType documentType = null;
+
+    static WarmEngineHolder getInstance() {
+        return INSTANCE;
+    }
+
+    private WarmEngineHolder() {
+    }
+
+    /**
+     * Start using the engine, the card is initialized if it is not warm for this configuration.
+     *
+     * @param context      activity context
+     * @param cardType     card type of {@link RecogEngine#initCard(Context, int)}, 0 for MRZ
+     * @param documentType document type to be scanned
+     * @return result of the card initialization, the cached one if the engine was warm, or an error
+     * if other screens kept using the engine with another configuration. The engine counts as used
+     * in every case, {@link #release()} has to be called.
+     */
+    synchronized InitModel acquire(Context context, int cardType, MRZDocumentType documentType) {
+        handler.removeCallbacks(idleRelease);
+        if (!isWarm(cardType, documentType) && initModel != null && refCount > 0) {
+            // other screens still scan with the loaded card, wait until they are done with it
+            long deadline = System.currentTimeMillis() + RECONFIGURE_TIMEOUT_MS;
+            long left = RECONFIGURE_TIMEOUT_MS;
+            while (initModel != null && refCount > 0 && !isWarm(cardType, documentType) && left > 0) {
+                try {
+                    wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                left = deadline - System.currentTimeMillis();
+            }
+            handler.removeCallbacks(idleRelease);
+        }
+        refCount++;
+        if (isWarm(cardType, documentType)) {
+            AccuraLog.loge(TAG, "Warm " + refCount);
+            return initModel;
+        }
+        if (initModel != null && refCount > 1) {
+            AccuraLog.loge(TAG, "Busy " + refCount);
+            InitModel busy = new InitModel();
+            busy.setResponseCode(0);
+            busy.setResponseMessage("Scanner is in use by another screen");
+            return busy;
+        }
+        if (initModel != null) {
+            // other configuration, the card has to be loaded again
+            engine.closeEngine(1);
+            initModel = null;
+        }
+        InitModel model = engine.initCard(context, cardType);
+        if (model != null && model.getResponseCode() != null && model.getResponseCode() == 1) {
+            initModel = model;
+            this.cardType = cardType;
+            this.documentType = documentType;
+        }
+        return model;
+    }
+
+    /**
+     * Stop using the engine, it is closed once no one used it for the idle timeout.
+     */
+    synchronized void release() {
+        if (refCount == 0) return;
+        refCount--;
+        if (refCount == 0 && initModel != null) {
+            handler.removeCallbacks(idleRelease);
+            handler.postDelayed(idleRelease, idleTimeout);
+        }
+        // a screen with another configuration may wait for the engine
+        notifyAll();
+    }
+
+    /**
+     * Close the engine now if no scan screen is using it, e.g. on memory pressure.
+     */
+    synchronized void trim() {
+        close(1);
+    }
+
+    /**
+     * Close the engine now if no scan screen is using it, the next {@link #acquire} initializes it
+     * again. A screen has to {@link #release()} its own use first.
+     *
+     * @param destroy value given to {@link RecogEngine#closeEngine(int)}
+     * @return false if the engine is still used and was kept
+     */
+    synchronized boolean close(int destroy) {
+        if (refCount > 0) {
+            AccuraLog.loge(TAG, "In use " + refCount);
+            return false;
+        }
+        handler.removeCallbacks(idleRelease);
+        if (initModel != null || destroy == 0) {
+            engine.closeEngine(destroy);
+        }
+        initModel = null;
+        cardType = -1;
+        documentType = null;
+        notifyAll();
+        return true;
+    }
+
+    synchronized void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = Math.max(0, idleTimeout);
+    }
+
+    synchronized int getRefCount() {
+        return refCount;
+    }
+
+    private boolean isWarm(int cardType, MRZDocumentType documentType) {
+        return initModel != null && this.cardType == cardType && this.documentType == documentType;
+    }
+}
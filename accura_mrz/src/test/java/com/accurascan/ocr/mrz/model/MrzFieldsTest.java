@@ -0,0 +1,160 @@
+package com.accurascan.ocr.mrz.model;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decoding of the native field output by {@link MrzFields}.
+ */
+public class MrzFieldsTest {
+
+    @Test
+    public void fieldsAreDecoded() {
+        MrzFields fields = new MrzFields();
+        String[] values = values();
+
+        assertTrue(fields.set(encode(values)));
+
+        assertTrue(fields.isValid());
+        for (int field = 0; field < MrzFields.FIELD_COUNT; field++) {
+            assertEquals(values[field], fields.get(field));
+            assertEquals(values[field].length(), fields.length(field));
+        }
+        assertTrue(fields.isEmpty(MrzFields.ISSUE_DATE));
+        assertEquals('U', fields.byteAt(MrzFields.COUNTRY, 0));
+    }
+
+    @Test
+    public void stringIsCreatedOnce() {
+        MrzFields fields = new MrzFields();
+        fields.set(encode(values()));
+
+        assertSame(fields.get(MrzFields.SURNAME), fields.get(MrzFields.SURNAME));
+    }
+
+    @Test
+    public void fieldEndsAtFirstNul() {
+        String[] values = values();
+        values[MrzFields.SEX] = "F\0\0";
+        MrzFields fields = new MrzFields();
+
+        assertTrue(fields.set(encode(values)));
+
+        assertEquals("F", fields.get(MrzFields.SEX));
+        assertEquals("120415", fields.get(MrzFields.EXPIRATION_DATE));
+    }
+
+    @Test
+    public void incompleteOutputIsRejected() {
+        int[] data = encode(values());
+        MrzFields fields = new MrzFields();
+
+        assertFalse(fields.set(Arrays.copyOf(data, data.length - 1)));
+        assertFalse(fields.isValid());
+        assertEquals("", fields.get(MrzFields.LINES));
+
+        data[0] = -1;
+        assertFalse(fields.set(data));
+        assertFalse(fields.set((int[]) null));
+    }
+
+    @Test
+    public void longOutputGrowsTheBuffer() {
+        String[] values = values();
+        char[] name = new char[600];
+        Arrays.fill(name, 'A');
+        values[MrzFields.GIVEN_NAME] = new String(name);
+        MrzFields fields = new MrzFields();
+
+        assertTrue(fields.set(encode(values)));
+
+        assertEquals(values[MrzFields.GIVEN_NAME], fields.get(MrzFields.GIVEN_NAME));
+        assertEquals(values[MrzFields.DOC_NUMBER], fields.get(MrzFields.DOC_NUMBER));
+    }
+
+    @Test
+    public void copyAndCompare() {
+        MrzFields first = new MrzFields();
+        first.set(encode(values()));
+        MrzFields copy = new MrzFields();
+
+        copy.set(first);
+
+        assertTrue(copy.isValid());
+        for (int field = 0; field < MrzFields.FIELD_COUNT; field++) {
+            assertTrue(copy.fieldEquals(field, first));
+        }
+
+        String[] values = values();
+        values[MrzFields.DOC_NUMBER] = "L898902C4";
+        MrzFields other = new MrzFields();
+        other.set(encode(values));
+        assertFalse(other.fieldEquals(MrzFields.DOC_NUMBER, first));
+        assertTrue(other.fieldEquals(MrzFields.SURNAME, first));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void byteAtOutsideField() {
+        MrzFields fields = new MrzFields();
+        fields.set(encode(values()));
+
+        fields.byteAt(MrzFields.SEX, 1);
+    }
+
+    @Test
+    public void clearEmptiesAllFields() {
+        MrzFields fields = new MrzFields();
+        fields.set(encode(values()));
+
+        fields.clear();
+
+        assertFalse(fields.isValid());
+        assertTrue(fields.isEmpty(MrzFields.SURNAME));
+        assertEquals("", fields.get(MrzFields.SURNAME));
+    }
+
+    /**
+     * Fields of the ICAO 9303 TD3 specimen.
+     */
+    private static String[] values() {
+        String[] values = new String[MrzFields.FIELD_COUNT];
+        Arrays.fill(values, "");
+        values[MrzFields.LINES] = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898902C36UTO7408122F1204159ZE184226B<<<<<10";
+        values[MrzFields.DOC_TYPE] = "P<";
+        values[MrzFields.COUNTRY] = "UTO";
+        values[MrzFields.SURNAME] = "ERIKSSON";
+        values[MrzFields.GIVEN_NAME] = "ANNA MARIA";
+        values[MrzFields.DOC_NUMBER] = "L898902C3";
+        values[MrzFields.DOC_CHECKSUM] = "6";
+        values[MrzFields.NATIONALITY] = "UTO";
+        values[MrzFields.BIRTH] = "740812";
+        values[MrzFields.BIRTH_CHECKSUM] = "2";
+        values[MrzFields.SEX] = "F";
+        values[MrzFields.EXPIRATION_DATE] = "120415";
+        values[MrzFields.EXPIRATION_CHECKSUM] = "9";
+        values[MrzFields.OTHER_ID] = "ZE184226B";
+        values[MrzFields.OTHER_ID_CHECKSUM] = "1";
+        values[MrzFields.SECOND_ROW_CHECKSUM] = "0";
+        return values;
+    }
+
+    private static int[] encode(String[] values) {
+        int size = 0;
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = values[i].getBytes(Charset.forName("UTF-8"));
+            size += 1 + bytes[i].length;
+        }
+        int[] data = new int[size];
+        int k = 0;
+        for (byte[] field : bytes) {
+            data[k++] = field.length;
+            for (byte b : field) data[k++] = b;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,100 @@
+package com.accurascan.ocr.mrz.motiondetection;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Destination-buffer variants of {@link ImageProcessing} give the same values as the allocating ones.
+ */
+public class ImageProcessingTest {
+
+    private static final int WIDTH = 24;
+    private static final int HEIGHT = 16;
+
+    @Test
+    public void argbIntoGivenArray() {
+        float[] argb = new float[4];
+        int pixel = 0x80ff4010;
+
+        assertSame(argb, ImageProcessing.getARGB(pixel, argb));
+        assertArrayEquals(ImageProcessing.getARGB(pixel), argb, 0f);
+        assertEquals(0x40, argb[ImageProcessing.G], 0f);
+    }
+
+    @Test
+    public void hslIntoGivenArray() {
+        int[] hsl = new int[3];
+
+        assertSame(hsl, ImageProcessing.convertToHSL(255, 255, 255, hsl));
+        assertArrayEquals(ImageProcessing.convertToHSL(255, 255, 255), hsl);
+    }
+
+    @Test
+    public void lumaRegionMatchesFullDecode() {
+        byte[] nv21 = frame();
+        int[] full = ImageProcessing.decodeYUV420SPtoLuma(nv21, WIDTH, HEIGHT);
+        int left = 3, top = 5, regionWidth = 13, regionHeight = 9, stride = 2;
+        int[] region = new int[ImageProcessing.getSampledLength(regionWidth, regionHeight, stride)];
+
+        ImageProcessing.decodeYUV420SPtoLuma(nv21, WIDTH, HEIGHT, left, top, regionWidth, regionHeight, stride, region);
+
+        assertRegion(full, region, left, top, regionWidth, regionHeight, stride);
+    }
+
+    @Test
+    public void rgbRegionMatchesFullDecode() {
+        byte[] nv21 = frame();
+        int[] full = ImageProcessing.decodeYUV420SPtoRGB(nv21, WIDTH, HEIGHT);
+        int left = 1, top = 3, regionWidth = 20, regionHeight = 12, stride = 3;
+        int[] region = new int[ImageProcessing.getSampledLength(regionWidth, regionHeight, stride)];
+
+        ImageProcessing.decodeYUV420SPtoRGB(nv21, WIDTH, HEIGHT, left, top, regionWidth, regionHeight, stride, region);
+
+        assertRegion(full, region, left, top, regionWidth, regionHeight, stride);
+    }
+
+    @Test
+    public void wholeImageWithStrideOne() {
+        byte[] nv21 = frame();
+        int[] rgb = new int[WIDTH * HEIGHT];
+
+        ImageProcessing.decodeYUV420SPtoRGB(nv21, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, 1, rgb);
+
+        assertArrayEquals(ImageProcessing.decodeYUV420SPtoRGB(nv21, WIDTH, HEIGHT), rgb);
+    }
+
+    @Test
+    public void sampledLength() {
+        assertEquals(WIDTH * HEIGHT, ImageProcessing.getSampledLength(WIDTH, HEIGHT, 1));
+        assertEquals(7 * 4, ImageProcessing.getSampledLength(13, 7, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void regionOutsideImage() {
+        ImageProcessing.decodeYUV420SPtoLuma(frame(), WIDTH, HEIGHT, 10, 0, WIDTH, HEIGHT, 1, new int[WIDTH * HEIGHT]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void strideBelowOne() {
+        ImageProcessing.decodeYUV420SPtoRGB(frame(), WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, 0, new int[WIDTH * HEIGHT]);
+    }
+
+    private static void assertRegion(int[] full, int[] region, int left, int top, int regionWidth, int regionHeight, int stride) {
+        int k = 0;
+        for (int y = top; y < top + regionHeight; y += stride) {
+            for (int x = left; x < left + regionWidth; x += stride, k++) {
+                assertEquals("pixel " + x + "," + y, full[y * WIDTH + x], region[k]);
+            }
+        }
+        assertEquals(region.length, k);
+    }
+
+    private static byte[] frame() {
+        byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+        new Random(42).nextBytes(nv21);
+        return nv21;
+    }
+}
@@ -0,0 +1,85 @@
+package com.accurascan.ocr.mrz.motiondetection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tile decision of {@link LumaMotionDetection} on synthetic NV21 frames.
+ */
+public class LumaMotionDetectionTest {
+
+    private static final int WIDTH = 128;
+    private static final int HEIGHT = 128;
+    // 10% different pixels
+    private static final float THRESHOLD = 10;
+    private static final float RESOLUTION = 1;
+
+    private LumaMotionDetection detection;
+    private byte[] background;
+
+    @Before
+    public void setUp() {
+        detection = new LumaMotionDetection();
+        background = frame();
+        assertFalse(detection.detect(background, WIDTH, HEIGHT, THRESHOLD, RESOLUTION));
+    }
+
+    @Test
+    public void sameFrameIsStill() {
+        assertFalse(detection.detect(frame(), WIDTH, HEIGHT, THRESHOLD, RESOLUTION));
+    }
+
+    @Test
+    public void changedCenterIsMotion() {
+        byte[] moved = frame();
+        fill(moved, 32, 32, 96, 96);
+
+        assertTrue(detection.detect(moved, WIDTH, HEIGHT, THRESHOLD, RESOLUTION));
+    }
+
+    @Test
+    public void changedEdgeIsStill() {
+        byte[] moved = frame();
+        // a hand over the top tile row
+        fill(moved, 0, 0, WIDTH, HEIGHT / LumaMotionDetection.DEFAULT_TILES);
+
+        assertFalse(detection.detect(moved, WIDTH, HEIGHT, THRESHOLD, RESOLUTION));
+    }
+
+    @Test
+    public void shakenFrameIsMotion() {
+        byte[] moved = frame();
+        fill(moved, 0, 0, WIDTH, HEIGHT);
+
+        assertTrue(detection.detect(moved, WIDTH, HEIGHT, THRESHOLD, RESOLUTION));
+    }
+
+    @Test
+    public void smallerSizeIsMotion() {
+        assertTrue(detection.detect(frame(), WIDTH / 2, HEIGHT, THRESHOLD, RESOLUTION));
+    }
+
+    @Test
+    public void resetTakesNextFrameAsBackground() {
+        byte[] moved = frame();
+        fill(moved, 0, 0, WIDTH, HEIGHT);
+        detection.reset();
+
+        assertFalse(detection.detect(moved, WIDTH, HEIGHT, THRESHOLD, RESOLUTION));
+        assertNull(new LumaMotionDetection().getPrevious());
+    }
+
+    private static byte[] frame() {
+        byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int i = 0; i < WIDTH * HEIGHT; i++) nv21[i] = 100;
+        return nv21;
+    }
+
+    private static void fill(byte[] nv21, int left, int top, int right, int bottom) {
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) nv21[y * WIDTH + x] = (byte) 220;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.accurascan.ocr.mrz.util;
+
+import com.docrecog.scan.MRZDocumentType;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check digits and OCR confusion repairs of {@link MrzValidator} on the ICAO 9303 specimens.
+ */
+public class MrzValidatorTest {
+
+    private static final String TD1 = "I<UTOD231458907<<<<<<<<<<<<<<<\n7408122F1204159UTO<<<<<<<<<<<6\nERIKSSON<<ANNA<MARIA<<<<<<<<<<";
+    private static final String TD2 = "I<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<\nD231458907UTO7408122F1204159<<<<<<<6";
+    private static final String TD3 = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898902C36UTO7408122F1204159ZE184226B<<<<<10";
+    private static final String MRV_A = "V<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL8988901C4XXX4009078F96121096ZE184226B<<<<<<";
+    private static final String MRV_B = "V<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<\nL8988901C4XXX4009078F9612109<<<<<<<<";
+
+    @Test
+    public void specimensAreValid() {
+        for (String lines : new String[]{TD1, TD2, TD3, MRV_A, MRV_B}) {
+            assertTrue(lines, MrzValidator.isValid(lines, MRZDocumentType.NONE));
+            assertSame(lines, MrzValidator.correct(lines, MRZDocumentType.NONE));
+        }
+    }
+
+    @Test
+    public void layouts() {
+        assertEquals(MrzValidator.Layout.TD1, MrzValidator.getLayout(TD1, MRZDocumentType.NONE));
+        assertEquals(MrzValidator.Layout.TD2, MrzValidator.getLayout(TD2, MRZDocumentType.ID_CARD_MRZ));
+        assertEquals(MrzValidator.Layout.TD3, MrzValidator.getLayout(TD3, MRZDocumentType.PASSPORT_MRZ));
+        assertEquals(MrzValidator.Layout.MRV_A, MrzValidator.getLayout(MRV_A, MRZDocumentType.VISA_MRZ));
+        assertEquals(MrzValidator.Layout.MRV_B, MrzValidator.getLayout(MRV_B, MRZDocumentType.NONE));
+        assertNull(MrzValidator.getLayout(TD3, MRZDocumentType.ID_CARD_MRZ));
+        assertNull(MrzValidator.getLayout(TD1, MRZDocumentType.PASSPORT_MRZ));
+        assertNull(MrzValidator.getLayout("P<UTO\nL898902C3", MRZDocumentType.NONE));
+        assertNull(MrzValidator.getLayout(null, MRZDocumentType.NONE));
+        // separators of any kind, trailing new line
+        assertEquals(MrzValidator.Layout.TD3, MrzValidator.getLayout(TD3.replace("\n", "\r\n") + "\n", MRZDocumentType.NONE));
+    }
+
+    @Test
+    public void checkDigits() {
+        assertEquals(6, MrzValidator.checkDigit("L898902C3", 0, 9));
+        assertEquals(2, MrzValidator.checkDigit("740812", 0, 6));
+        assertEquals(9, MrzValidator.checkDigit("120415", 0, 6));
+        assertEquals(0, MrzValidator.checkDigit("<<<<<<<<<<<<<<", 0, 14));
+    }
+
+    @Test
+    public void validReadIsNormalized() {
+        // digits in the names are not covered by any check digit
+        String read = "P<UTOER1KSS0N<<ANNA<MAR1A<<<<<<<<<<<<<<<<<<<\nL898902C36UTO7408122F1204159ZE184226B<<<<<10";
+
+        assertTrue(MrzValidator.isValid(read, MRZDocumentType.PASSPORT_MRZ));
+        assertEquals(TD3, MrzValidator.correct(read, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    @Test
+    public void numericConfusionsAreRepaired() {
+        String read = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898902C36UTO74O8I22F12O4I59ZE184226B<<<<<IO";
+
+        assertEquals(TD3, MrzValidator.correct(read, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    @Test
+    public void alphanumericConfusionIsRepairedByCheckDigit() {
+        String read = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL8989O2C36UTO7408122F1204159ZE184226B<<<<<10";
+
+        assertEquals(TD3, MrzValidator.correct(read, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    @Test
+    public void td1RepairsAcrossLines() {
+        String read = "I<UTOD2314589O7<<<<<<<<<<<<<<<\n74O8122F12O4159UTO<<<<<<<<<<<6\nER1KSSON<<ANNA<MARIA<<<<<<<<<<";
+
+        assertEquals(TD1, MrzValidator.correct(read, MRZDocumentType.ID_CARD_MRZ));
+    }
+
+    @Test
+    public void atMostOneChangePerField() {
+        // two confusions in the document number, a second change passes a check digit too often
+        String read = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nLB989O2C36UTO7408122F1204159ZE184226B<<<<<10";
+
+        assertNull(MrzValidator.correct(read, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    @Test
+    public void wrongDigitIsNotRepaired() {
+        String read = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898902C36UTO7408132F1204159ZE184226B<<<<<10";
+
+        assertFalse(MrzValidator.isValid(read, MRZDocumentType.PASSPORT_MRZ));
+        assertNull(MrzValidator.correct(read, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    @Test
+    public void ambiguousVisaRepairIsNotMade() {
+        String read = "V<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898B901C4XXX4009078F96121096ZE184226B<<<<<<";
+
+        // B -> 8 and 8 -> B one position earlier both fit the check digit, nothing else decides
+        assertNull(MrzValidator.correct(read, MRZDocumentType.VISA_MRZ));
+    }
+
+    @Test
+    public void normalizedVisaIsCorrected() {
+        String read = "V<UTOER1KSSON<<ANNA<MARIA<<<<<<<<<<<\nL8988901C4XXX4OO9078F9612109<<<<<<<<";
+
+        assertEquals(MRV_B, MrzValidator.correct(read, MRZDocumentType.VISA_MRZ));
+    }
+
+    @Test
+    public void ambiguousPassportRepairIsNotMade() {
+        String valid = passport("L8988901C");
+        String read = valid.replace("L8988901C", "L898B901C");
+
+        // L89BB901C passes the field and, with the same weights over the document number, the
+        // composite check digit as well
+        assertTrue(MrzValidator.isValid(valid, MRZDocumentType.PASSPORT_MRZ));
+        assertTrue(MrzValidator.isValid(valid.replace("L8988901C", "L89BB901C"), MRZDocumentType.PASSPORT_MRZ));
+        assertNull(MrzValidator.correct(read, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    /**
+     * @return TD3 specimen with another document number and its check digits
+     */
+    private static String passport(String documentNumber) {
+        String number = documentNumber + MrzValidator.checkDigit(documentNumber, 0, 9);
+        String composite = number + "7408122" + "1204159" + "ZE184226B<<<<<1";
+        return "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\n" + number + "UTO7408122F1204159ZE184226B<<<<<1"
+                + MrzValidator.checkDigit(composite, 0, composite.length());
+    }
+
+    @Test
+    public void linesOnTheirOwn() {
+        MrzValidator.Layout layout = MrzValidator.Layout.TD1;
+        char[] mrz = MrzValidator.toChars(TD1, layout);
+
+        for (int line = 0; line < layout.lines; line++) {
+            assertTrue(MrzValidator.isLineValid(mrz, layout, line));
+        }
+        assertEquals(1, MrzValidator.getCheckCount(layout, 0));
+        assertEquals(2, MrzValidator.getCheckCount(layout, 1));
+        assertEquals(0, MrzValidator.getCheckCount(layout, 2));
+        assertEquals(4, MrzValidator.getCheckCount(layout));
+
+        mrz[2 * layout.length + 3] = '1';
+        assertFalse(MrzValidator.isLineValid(mrz, layout, 2));
+        assertEquals(TD1.replace("ERIKSSON", "ERI1SSON"), MrzValidator.toLines(mrz, layout));
+    }
+}
@@ -0,0 +1,135 @@
+package com.docrecog.scan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latest-frame-wins hand-off of {@link FrameMailbox}.
+ */
+public class FrameMailboxTest {
+
+    private FrameMailbox mailbox;
+
+    @Before
+    public void setUp() {
+        mailbox = new FrameMailbox();
+        mailbox.open();
+    }
+
+    @Test
+    public void closedMailboxHandsTheFrameBack() {
+        FrameMailbox closed = new FrameMailbox();
+        byte[] data = new byte[4];
+
+        FrameMailbox.Frame dropped = closed.offer(data, null);
+
+        assertNotNull(dropped);
+        assertSame(data, dropped.data);
+        assertEquals(0, closed.getSubmittedCount());
+    }
+
+    @Test
+    public void newerFrameSupersedesWaitingFrame() {
+        byte[] first = new byte[4];
+        byte[] second = new byte[4];
+
+        assertNull(mailbox.offer(first, null));
+        FrameMailbox.Frame superseded = mailbox.offer(second, null);
+
+        assertSame(first, superseded.data);
+        assertSame(second, mailbox.take().data);
+        assertEquals(2, mailbox.getSubmittedCount());
+        assertEquals(1, mailbox.getSupersededCount());
+    }
+
+    @Test
+    public void takenFrameIsNotSuperseded() {
+        mailbox.offer(new byte[4], null);
+        mailbox.take();
+        mailbox.onProcessed();
+
+        assertNull(mailbox.offer(new byte[4], null));
+        assertEquals(0, mailbox.getSupersededCount());
+        assertEquals(1, mailbox.getProcessedCount());
+    }
+
+    @Test
+    public void skippedFramesAreCounted() {
+        mailbox.offer(new byte[4], null);
+        mailbox.take();
+        mailbox.onSkipped();
+
+        assertEquals(1, mailbox.getSkippedCount());
+        assertEquals(0, mailbox.getProcessedCount());
+        assertTrue(mailbox.toString().contains("skipped=1"));
+    }
+
+    @Test
+    public void closeDropsWaitingFrame() {
+        mailbox.offer(new byte[4], null);
+        mailbox.close();
+
+        assertFalse(mailbox.isOpen());
+        assertNull(mailbox.take());
+    }
+
+    @Test
+    public void closeWakesWaitingWorker() throws InterruptedException {
+        final AtomicReference<FrameMailbox.Frame> taken = new AtomicReference<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                taken.set(mailbox.take());
+                done.countDown();
+            }
+        });
+        worker.start();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        mailbox.close();
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertNull(taken.get());
+    }
+
+    @Test
+    public void offerWakesWaitingWorker() throws InterruptedException {
+        final AtomicReference<FrameMailbox.Frame> taken = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                taken.set(mailbox.take());
+                done.countDown();
+            }
+        });
+        worker.start();
+        byte[] data = new byte[4];
+
+        mailbox.offer(data, null);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertSame(data, taken.get().data);
+    }
+
+    @Test
+    public void openStartsNewSession() {
+        mailbox.offer(new byte[4], null);
+        mailbox.offer(new byte[4], null);
+
+        mailbox.open();
+
+        assertEquals(0, mailbox.getSubmittedCount());
+        assertEquals(0, mailbox.getSupersededCount());
+        assertNull(mailbox.offer(new byte[4], null));
+    }
+}
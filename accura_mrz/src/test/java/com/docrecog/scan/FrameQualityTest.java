@@ -0,0 +1,126 @@
+package com.docrecog.scan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sharpness and glare of {@link FrameQuality} on synthetic NV21 frames.
+ */
+public class FrameQualityTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 120;
+
+    private final FrameQuality quality = new FrameQuality();
+
+    private static byte[] frame(int luma) {
+        byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+        Arrays.fill(nv21, (byte) luma);
+        return nv21;
+    }
+
+    /**
+     * Dark and light stripes of 4 pixels, like the strokes of printed text.
+     *
+     * @param blur radius of a box blur across the stripes
+     */
+    private static byte[] stripes(int blur) {
+        int[] row = new int[WIDTH];
+        for (int x = 0; x < WIDTH; x++) {
+            int sum = 0;
+            for (int k = x - blur; k <= x + blur; k++) {
+                sum += ((k + 8) % 8) < 4 ? 20 : 220;
+            }
+            row[x] = sum / (2 * blur + 1);
+        }
+        byte[] nv21 = frame(128);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                nv21[y * WIDTH + x] = (byte) row[x];
+            }
+        }
+        return nv21;
+    }
+
+    private int check(byte[] nv21, boolean checkBlur, boolean checkGlare) {
+        return quality.check(nv21, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, checkBlur, checkGlare);
+    }
+
+    @Test
+    public void flatFrameIsBlurred() {
+        byte[] nv21 = frame(128);
+
+        assertEquals(FrameQuality.BLURRED, check(nv21, true, true));
+        assertEquals(0f, quality.getSharpness(), 0.001f);
+        assertEquals(FrameQuality.OK, check(nv21, false, true));
+    }
+
+    @Test
+    public void sensorNoiseIsNotRejected() {
+        byte[] nv21 = frame(128);
+        Random random = new Random(7);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            nv21[i] = (byte) (128 + random.nextInt(5) - 2);
+        }
+
+        assertEquals(FrameQuality.OK, check(nv21, true, true));
+        // uniform noise of variance 2 gives about 40
+        assertEquals(40f, quality.getSharpness(), 10f);
+    }
+
+    @Test
+    public void blurredEdgesScoreLower() {
+        assertEquals(FrameQuality.OK, check(stripes(0), true, true));
+        float sharp = quality.getSharpness();
+        assertEquals(FrameQuality.OK, check(stripes(2), true, true));
+        float blurred = quality.getSharpness();
+
+        assertTrue(sharp > 10000);
+        assertTrue(blurred > FrameQuality.MIN_SHARPNESS);
+        assertTrue(blurred < sharp / 4);
+        assertEquals(0f, quality.getGlare(), 0.001f);
+    }
+
+    @Test
+    public void burntOutFrameIsGlare() {
+        byte[] nv21 = stripes(0);
+        Arrays.fill(nv21, 0, WIDTH * HEIGHT * 6 / 10, (byte) 255);
+
+        assertEquals(FrameQuality.GLARE, check(nv21, true, true));
+        assertEquals(0.6f, quality.getGlare(), 0.02f);
+        assertEquals(FrameQuality.OK, check(nv21, true, false));
+    }
+
+    @Test
+    public void partialGlareIsLeftToTheNativeCheck() {
+        byte[] nv21 = stripes(0);
+        Arrays.fill(nv21, 0, WIDTH * HEIGHT * 3 / 10, (byte) 255);
+
+        assertEquals(FrameQuality.OK, check(nv21, true, true));
+        assertEquals(0.3f, quality.getGlare(), 0.02f);
+    }
+
+    @Test
+    public void uncheckedFrameIsNotMeasured() {
+        assertEquals(FrameQuality.OK, check(frame(128), false, false));
+        assertTrue(quality.getSharpness() < 0);
+    }
+
+    @Test
+    public void tinyOrMissingAreaIsNotMeasured() {
+        assertEquals(FrameQuality.OK, quality.check(frame(128), WIDTH, HEIGHT, 10, 10, 12, 12, true, true));
+        assertTrue(quality.getSharpness() < 0);
+        assertEquals(FrameQuality.OK, quality.check(new byte[10], WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, true, true));
+        assertTrue(quality.getSharpness() < 0);
+    }
+
+    @Test
+    public void areaIsClippedToTheFrame() {
+        assertTrue(quality.measure(stripes(0), WIDTH, HEIGHT, -50, -50, WIDTH + 50, HEIGHT + 50));
+        assertTrue(quality.getSharpness() > 10000);
+    }
+}
@@ -0,0 +1,131 @@
+package com.docrecog.scan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Voting of {@link MrzConsensus} over reads of the ICAO 9303 TD3 specimen.
+ */
+public class MrzConsensusTest {
+
+    private static final String LINE_1 = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<";
+    private static final String TD3 = LINE_1 + "\nL898902C36UTO7408122F1204159ZE184226B<<<<<10";
+    // date of birth misread, not an OCR confusion which the check digits could repair
+    private static final String WRONG_BIRTH = LINE_1 + "\nL898902C36UTO7408132F1204159ZE184226B<<<<<10";
+    // document number misread, expiry clipped
+    private static final String WRONG_NUMBER = LINE_1 + "\nL898962C36UTO7408122F12041<9ZE184226B<<<<<10";
+    private static final String TD1 = "I<UTOD231458907<<<<<<<<<<<<<<<\n7408122F1204159UTO<<<<<<<<<<<6\nERIKSSON<<ANNA<MARIA<<<<<<<<<<";
+
+    private MrzConsensus consensus;
+
+    @Before
+    public void setUp() {
+        consensus = new MrzConsensus();
+    }
+
+    @Test
+    public void singleReadIsNotTrusted() {
+        assertTrue(consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ));
+
+        assertNull(consensus.getResult());
+    }
+
+    @Test
+    public void agreeingReadsGiveTheLines() {
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+
+        assertEquals(TD3, consensus.getResult());
+        assertEquals(2, consensus.getReadCount());
+    }
+
+    @Test
+    public void differentMistakesAreOutvoted() {
+        consensus.add(WRONG_BIRTH, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(WRONG_NUMBER, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+
+        assertEquals(TD3, consensus.getResult());
+    }
+
+    @Test
+    public void repeatedMistakeIsNeverGiven() {
+        consensus.add(WRONG_BIRTH, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(WRONG_BIRTH, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+
+        // the wrong digit has the most votes, but the check digits of the voted lines fail
+        assertNull(consensus.getResult());
+
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+        assertEquals(TD3, consensus.getResult());
+    }
+
+    @Test
+    public void confusionsOfTheVoteAreNormalized() {
+        String confused = "P<UTOER1KSS0N<<ANNA<MAR1A<<<<<<<<<<<<<<<<<<<\nL898902C36UTO74O8122F12O4159ZE184226B<<<<<1O";
+        consensus.add(confused, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(confused, MRZDocumentType.PASSPORT_MRZ);
+
+        assertEquals(TD3, consensus.getResult());
+    }
+
+    @Test
+    public void repeatedAmbiguousReadIsNotRepaired() {
+        // L8988901C read as L898B901C twice, B -> 8 and 8 -> B one position earlier both pass the
+        // check digit, the same read again does not tell which
+        String read = "V<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898B901C4XXX4009078F96121096ZE184226B<<<<<<";
+        consensus.add(read, MRZDocumentType.VISA_MRZ);
+        consensus.add(read, MRZDocumentType.VISA_MRZ);
+
+        assertNull(consensus.getResult());
+    }
+
+    @Test
+    public void checkDigitRepairIsLeftToTheReads() {
+        String confused = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL8989O2C36UTO7408122F1204159ZE184226B<<<<<10";
+        consensus.add(confused, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(confused, MRZDocumentType.PASSPORT_MRZ);
+
+        assertNull(consensus.getResult());
+
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+        assertEquals(TD3, consensus.getResult());
+    }
+
+    @Test
+    public void otherLayoutStartsNewVote() {
+        consensus.add(TD3, MRZDocumentType.NONE);
+        consensus.add(TD1, MRZDocumentType.NONE);
+
+        assertEquals(1, consensus.getReadCount());
+        assertNull(consensus.getResult());
+
+        consensus.add(TD1, MRZDocumentType.NONE);
+        assertEquals(TD1, consensus.getResult());
+    }
+
+    @Test
+    public void otherDocumentTypeIsIgnored() {
+        assertFalse(consensus.add(TD1, MRZDocumentType.PASSPORT_MRZ));
+        assertFalse(consensus.add("not a MRZ", MRZDocumentType.NONE));
+        assertFalse(consensus.add(null, MRZDocumentType.NONE));
+
+        assertEquals(0, consensus.getReadCount());
+    }
+
+    @Test
+    public void resetForgetsTheReads() {
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+        consensus.reset();
+        consensus.add(TD3, MRZDocumentType.PASSPORT_MRZ);
+
+        assertEquals(1, consensus.getReadCount());
+        assertNull(consensus.getResult());
+    }
+}
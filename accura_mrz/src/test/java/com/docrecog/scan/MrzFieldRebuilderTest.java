@@ -0,0 +1,121 @@
+package com.docrecog.scan;
+
+import com.accurascan.ocr.mrz.model.MrzFields;
+import com.accurascan.ocr.mrz.util.MrzValidator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fields of a native read brought in line with repaired lines by {@link MrzFieldRebuilder}.
+ */
+public class MrzFieldRebuilderTest {
+
+    private static final String TD3 = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898902C36UTO7408122F1204159ZE184226B<<<<<10";
+    private static final String TD3_READ = "P<UTOER1KSS0N<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\r\nL8989O2C36UTO7408122F1204159ZE184226B<<<<<10\n";
+    private static final String TD1 = "I<UTOD231458907<<<<<<<<<<<<<<<\n7408122F1204159UTO<<<<<<<<<<<6\nERIKSSON<<ANNA<MARIA<<<<<<<<<<";
+    private static final String TD1_READ = "I<UTOD23145B907<<<<<<<<<<<<<<<\n7408122F1204159UTO<<<<<<<<<<<6\nERIKSSON<<ANNA<MARIA<<<<<<<<<<";
+
+    @Test
+    public void fieldsFollowTheRepairedLines() {
+        MrzFields fields = td3Read();
+
+        assertTrue(MrzFieldRebuilder.rebuild(fields, TD3, MRZDocumentType.PASSPORT_MRZ));
+
+        assertEquals("ERIKSSON", fields.get(MrzFields.SURNAME));
+        assertEquals("ANNA MARIA", fields.get(MrzFields.GIVEN_NAME));
+        assertEquals("L898902C3", fields.get(MrzFields.DOC_NUMBER));
+        assertEquals("6", fields.get(MrzFields.CORRECT_DOC_CHECKSUM));
+        assertEquals("0", fields.get(MrzFields.CORRECT_SECOND_ROW_CHECKSUM));
+        assertEquals("P", fields.get(MrzFields.DOC_TYPE));
+        assertEquals("ZE184226B", fields.get(MrzFields.OTHER_ID));
+        // separators of the native lines are kept
+        assertEquals(TD3.replace("\n", "\r\n") + "\n", fields.get(MrzFields.LINES));
+    }
+
+    @Test
+    public void unchangedLinesKeepTheFields() {
+        MrzFields fields = td3Read();
+
+        assertTrue(MrzFieldRebuilder.rebuild(fields, TD3_READ, MRZDocumentType.PASSPORT_MRZ));
+
+        assertEquals("ER1KSS0N", fields.get(MrzFields.SURNAME));
+        assertEquals(TD3_READ, fields.get(MrzFields.LINES));
+    }
+
+    @Test
+    public void untraceableFieldRejectsTheRead() {
+        MrzFields fields = td3Read();
+        fields.set(MrzFields.SURNAME, "Er1kss0n");
+
+        assertFalse(MrzFieldRebuilder.rebuild(fields, TD3, MRZDocumentType.PASSPORT_MRZ));
+        // nothing was changed
+        assertEquals("L8989O2C3", fields.get(MrzFields.DOC_NUMBER));
+        assertEquals(TD3_READ, fields.get(MrzFields.LINES));
+    }
+
+    @Test
+    public void nationalFieldRejectsTheRead() {
+        MrzFields fields = td3Read();
+        fields.set(MrzFields.ISSUE_DATE, "010203");
+
+        assertFalse(MrzFieldRebuilder.rebuild(fields, TD3, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    @Test
+    public void otherLayoutRejectsTheRead() {
+        assertFalse(MrzFieldRebuilder.rebuild(td3Read(), TD1, MRZDocumentType.NONE));
+    }
+
+    @Test
+    public void td1Fields() {
+        MrzFields fields = new MrzFields();
+        fields.set(MrzFields.LINES, TD1_READ);
+        fields.set(MrzFields.DOC_TYPE, "I");
+        fields.set(MrzFields.DOC_NUMBER, "D23145B90");
+        fields.set(MrzFields.DOC_CHECKSUM, "7");
+        fields.set(MrzFields.CORRECT_DOC_CHECKSUM, String.valueOf(MrzValidator.checkDigit("D23145B90", 0, 9)));
+        fields.set(MrzFields.SURNAME, "ERIKSSON");
+        fields.set(MrzFields.NATIONALITY, "UTO");
+        fields.set(MrzFields.SECOND_ROW_CHECKSUM, "6");
+
+        assertTrue(MrzFieldRebuilder.rebuild(fields, TD1, MRZDocumentType.ID_CARD_MRZ));
+
+        assertEquals("D23145890", fields.get(MrzFields.DOC_NUMBER));
+        assertEquals("7", fields.get(MrzFields.CORRECT_DOC_CHECKSUM));
+        assertTrue(fields.isEmpty(MrzFields.OTHER_ID));
+        assertEquals(TD1, fields.get(MrzFields.LINES));
+    }
+
+    /**
+     * Native read of the TD3 specimen with OCR confusions in the name and the document number.
+     */
+    private static MrzFields td3Read() {
+        MrzFields fields = new MrzFields();
+        fields.set(MrzFields.LINES, TD3_READ);
+        fields.set(MrzFields.DOC_TYPE, "P");
+        fields.set(MrzFields.COUNTRY, "UTO");
+        fields.set(MrzFields.SURNAME, "ER1KSS0N");
+        fields.set(MrzFields.GIVEN_NAME, "ANNA MARIA");
+        fields.set(MrzFields.DOC_NUMBER, "L8989O2C3");
+        fields.set(MrzFields.DOC_CHECKSUM, "6");
+        fields.set(MrzFields.CORRECT_DOC_CHECKSUM, String.valueOf(MrzValidator.checkDigit("L8989O2C3", 0, 9)));
+        fields.set(MrzFields.NATIONALITY, "UTO");
+        fields.set(MrzFields.BIRTH, "740812");
+        fields.set(MrzFields.BIRTH_CHECKSUM, "2");
+        fields.set(MrzFields.CORRECT_BIRTH_CHECKSUM, "2");
+        fields.set(MrzFields.SEX, "F");
+        fields.set(MrzFields.EXPIRATION_DATE, "120415");
+        fields.set(MrzFields.EXPIRATION_CHECKSUM, "9");
+        fields.set(MrzFields.CORRECT_EXPIRATION_CHECKSUM, "9");
+        fields.set(MrzFields.OTHER_ID, "ZE184226B");
+        fields.set(MrzFields.OTHER_ID_CHECKSUM, "1");
+        fields.set(MrzFields.CORRECT_OTHER_ID_CHECKSUM, "1");
+        fields.set(MrzFields.SECOND_ROW_CHECKSUM, "0");
+        String read = "L8989O2C36UTO7408122F1204159ZE184226B<<<<<1";
+        fields.set(MrzFields.CORRECT_SECOND_ROW_CHECKSUM, String.valueOf(
+                MrzValidator.checkDigit(read.substring(0, 10) + read.substring(13, 20) + read.substring(21, 43), 0, 39)));
+        return fields;
+    }
+}
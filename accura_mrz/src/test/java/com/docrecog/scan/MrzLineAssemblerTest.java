@@ -0,0 +1,83 @@
+package com.docrecog.scan;
+
+import com.accurascan.ocr.mrz.util.MrzValidator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Joining of lines read valid in different frames by {@link MrzLineAssembler}.
+ */
+public class MrzLineAssemblerTest {
+
+    private static final String LINE_1 = "I<UTOD231458907<<<<<<<<<<<<<<<";
+    private static final String LINE_2 = "7408122F1204159UTO<<<<<<<<<<<6";
+    private static final String LINE_3 = "ERIKSSON<<ANNA<MARIA<<<<<<<<<<";
+    private static final String TD1 = LINE_1 + "\n" + LINE_2 + "\n" + LINE_3;
+    // line 1 under glare, document number misread
+    private static final String GLARE_1 = "I<UTOD23I4S8907<<<<<<<<<<<<<<<\n" + LINE_2 + "\n" + LINE_3;
+    // line 2 clipped
+    private static final String CLIPPED_2 = LINE_1 + "\n7408122F12041<<UTO<<<<<<<<<<<6\n" + LINE_3;
+
+    private MrzLineAssembler assembler;
+
+    @Before
+    public void setUp() {
+        assembler = new MrzLineAssembler();
+    }
+
+    @Test
+    public void linesOfTwoFramesAreJoined() {
+        assertNull(assembler.add(GLARE_1, MRZDocumentType.ID_CARD_MRZ));
+
+        assertEquals(TD1, assembler.add(CLIPPED_2, MRZDocumentType.ID_CARD_MRZ));
+    }
+
+    @Test
+    public void namesNeedTwoReads() {
+        String otherName = LINE_1 + "\n7408122F12041<<UTO<<<<<<<<<<<6\nERIKSSON<<ANNE<MARIA<<<<<<<<<<";
+
+        assertNull(assembler.add(GLARE_1, MRZDocumentType.ID_CARD_MRZ));
+        // line 3 differs from the first read, it is not confirmed yet
+        assertNull(assembler.add(otherName, MRZDocumentType.ID_CARD_MRZ));
+        assertNull(assembler.add(CLIPPED_2, MRZDocumentType.ID_CARD_MRZ));
+        assertEquals(TD1, assembler.add(GLARE_1, MRZDocumentType.ID_CARD_MRZ));
+    }
+
+    @Test
+    public void compositeCheckAcrossLines() {
+        // both lines valid on their own, but of two documents
+        String otherDocument = "I<UTOD231458918<<<<<<<<<<<<<<<\n" + LINE_2 + "\n" + LINE_3;
+        char[] mrz = MrzValidator.toChars(otherDocument, MrzValidator.Layout.TD1);
+        assertTrue(MrzValidator.isLineValid(mrz, MrzValidator.Layout.TD1, 0));
+        assertFalse(MrzValidator.isValid(otherDocument, MRZDocumentType.ID_CARD_MRZ));
+
+        assertNull(assembler.add(otherDocument, MRZDocumentType.ID_CARD_MRZ));
+        // every line confirmed, the composite check fails and the weakest line is dropped
+        assertNull(assembler.add(otherDocument, MRZDocumentType.ID_CARD_MRZ));
+        assertEquals(TD1, assembler.add(CLIPPED_2, MRZDocumentType.ID_CARD_MRZ));
+    }
+
+    @Test
+    public void onlyTd1IsAssembled() {
+        assertTrue(MrzLineAssembler.isSupported(MrzValidator.Layout.TD1));
+        assertFalse(MrzLineAssembler.isSupported(MrzValidator.Layout.TD2));
+        assertFalse(MrzLineAssembler.isSupported(MrzValidator.Layout.TD3));
+        assertFalse(MrzLineAssembler.isSupported(MrzValidator.Layout.MRV_A));
+        assertFalse(MrzLineAssembler.isSupported(MrzValidator.Layout.MRV_B));
+
+        String td3 = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898902C36UTO7408122F1204159ZE184226B<<<<<10";
+        assertNull(assembler.add(td3, MRZDocumentType.PASSPORT_MRZ));
+        assertNull(assembler.add(td3, MRZDocumentType.PASSPORT_MRZ));
+    }
+
+    @Test
+    public void resetForgetsTheLines() {
+        assembler.add(GLARE_1, MRZDocumentType.ID_CARD_MRZ);
+        assembler.reset();
+
+        assertNull(assembler.add(CLIPPED_2, MRZDocumentType.ID_CARD_MRZ));
+    }
+}
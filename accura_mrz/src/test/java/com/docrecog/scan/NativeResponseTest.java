@@ -0,0 +1,92 @@
+package com.docrecog.scan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Responses of the native quality checks read by {@link NativeResponse}.
+ */
+public class NativeResponseTest {
+
+    private NativeResponse response;
+
+    @Before
+    public void setUp() {
+        response = new NativeResponse();
+    }
+
+    @Test
+    public void codeAndMessage() {
+        assertTrue(response.parse("{\"responseCode\":0,\"responseMessage\":\"Keep document steady\"}"));
+
+        assertEquals(0, response.getCode());
+        assertEquals("Keep document steady", response.getMessage());
+    }
+
+    @Test
+    public void whitespaceAndKeyOrder() {
+        assertTrue(response.parse("{ \"responseMessage\" : \"Blur detected\" ,\n \"responseCode\" : -2 }"));
+
+        assertEquals(-2, response.getCode());
+        assertEquals("Blur detected", response.getMessage());
+    }
+
+    @Test
+    public void quotedCode() {
+        assertTrue(response.parse("{\"responseCode\":\"1\",\"responseMessage\":\"\"}"));
+
+        assertEquals(1, response.getCode());
+        assertEquals("", response.getMessage());
+    }
+
+    @Test
+    public void fractionIsCutOff() {
+        assertTrue(response.parse("{\"responseCode\":1.0}"));
+        assertEquals(1, response.getCode());
+
+        assertTrue(response.parse("{\"responseCode\":\"-3.7\"}"));
+        assertEquals(-3, response.getCode());
+    }
+
+    @Test
+    public void unclosedQuotedCode() {
+        assertFalse(response.parse("{\"responseCode\":\"1,\"responseMessage\":\"x\"}"));
+        assertEquals(0, response.getCode());
+    }
+
+    @Test
+    public void missingOrInvalidCode() {
+        assertFalse(response.parse(null));
+        assertFalse(response.parse(""));
+        assertFalse(response.parse("{\"responseMessage\":\"x\"}"));
+        assertFalse(response.parse("{\"responseCode\":\"x\"}"));
+        assertFalse(response.parse("{\"responseCode\":null}"));
+        assertEquals("", response.getMessage());
+    }
+
+    @Test
+    public void escapedMessage() {
+        assertTrue(response.parse("{\"responseCode\":1,\"responseMessage\":\"Glare \\\"high\\\"\\n\\u0041\"}"));
+
+        assertEquals("Glare \"high\"\nA", response.getMessage());
+    }
+
+    @Test
+    public void repeatedMessageIsSameInstance() {
+        response.parse("{\"responseCode\":0,\"responseMessage\":\"" + "Move closer" + "\"}");
+        String first = response.getMessage();
+        response.parse(new String("{\"responseCode\":0,\"responseMessage\":\"Move closer\"}"));
+
+        assertSame(first, response.getMessage());
+    }
+
+    @Test
+    public void unterminatedMessage() {
+        assertTrue(response.parse("{\"responseCode\":3,\"responseMessage\":\"cut"));
+
+        assertEquals(3, response.getCode());
+        assertEquals("", response.getMessage());
+    }
+}
@@ -0,0 +1,78 @@
+package com.docrecog.scan;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+/**
+ * Buffers of {@link PreviewBufferRing} go back only to the camera they were attached to.
+ */
+public class PreviewBufferRingTest {
+
+    private Camera camera;
+    private PreviewBufferRing ring;
+    private List<byte[]> buffers;
+
+    @Before
+    public void setUp() {
+        camera = mock(Camera.class);
+        ring = new PreviewBufferRing(3);
+        ring.attach(camera, 640, 480, ImageFormat.NV21);
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(camera, times(3)).addCallbackBuffer(captor.capture());
+        buffers = captor.getAllValues();
+    }
+
+    @Test
+    public void attachQueuesDistinctBuffers() {
+        assertEquals(3, buffers.size());
+        assertNotSame(buffers.get(0), buffers.get(1));
+        assertNotSame(buffers.get(1), buffers.get(2));
+    }
+
+    @Test
+    public void ownBufferIsQueuedAgain() {
+        assertTrue(ring.recycle(camera, buffers.get(1)));
+        verify(camera, times(2)).addCallbackBuffer(same(buffers.get(1)));
+    }
+
+    @Test
+    public void foreignBufferIsRejected() {
+        assertFalse(ring.recycle(camera, new byte[buffers.get(0).length]));
+        assertFalse(ring.recycle(camera, null));
+        assertFalse(ring.recycle(mock(Camera.class), buffers.get(0)));
+    }
+
+    @Test
+    public void buffersOfEarlierSessionAreRejected() {
+        ring.detach();
+        assertFalse(ring.recycle(camera, buffers.get(0)));
+
+        ring.attach(camera, 640, 480, ImageFormat.NV21);
+        assertFalse(ring.recycle(camera, buffers.get(0)));
+    }
+
+    @Test
+    public void releasedCameraIsIgnored() {
+        doThrow(new RuntimeException("Camera is being used after Camera.release() was called"))
+                .when(camera).addCallbackBuffer(any(byte[].class));
+
+        assertFalse(ring.recycle(camera, buffers.get(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void atLeastOneBuffer() {
+        new PreviewBufferRing(0);
+    }
+}